@@ -0,0 +1,417 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.grpc.ClientCall;
+import io.grpc.Deadline;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Limits the number of calls of a client that run at once. Calls beyond {@code maxConcurrentCalls}
+ * wait in a queue ordered by priority, then arrival, and fail with {@code DEADLINE_EXCEEDED} if
+ * their deadline passes first. When {@code maxQueuedCalls} calls wait, a new call displaces the
+ * newest call of a lower priority or is rejected with {@code RESOURCE_EXHAUSTED}.
+ */
+public class GrpcAdmission {
+  static final int PRIORITY_NORMAL = 1;
+  static final int PRIORITY_LOW = 2;
+
+  private static final String[] PRIORITY_NAMES = {"high", "normal", "low"};
+
+  /**
+   * Starts an admitted call with the listener to use for it.
+   */
+  interface Starter {
+    void start(ClientCall.Listener<byte[]> listener);
+  }
+
+  private final int maxInFlight;
+  private final int maxQueued;
+  private final ScheduledExecutorService scheduler;
+  private final PriorityQueue<Ticket> queue = new PriorityQueue<>(11, (a, b) ->
+    a.priority != b.priority ? a.priority - b.priority : Long.compare(a.sequence, b.sequence));
+  private final long[] admitted = new long[PRIORITY_NAMES.length];
+  private final long[] totalWait = new long[PRIORITY_NAMES.length];
+  private final long[] maxWait = new long[PRIORITY_NAMES.length];
+
+  private int inFlight;
+  private long sequence;
+  private long rejected;
+  private long expired;
+  private long cancelled;
+  private boolean closed;
+
+  private GrpcAdmission(int maxInFlight, int maxQueued, ScheduledExecutorService scheduler) {
+    this.maxInFlight = maxInFlight;
+    this.maxQueued = maxQueued;
+    this.scheduler = scheduler;
+  }
+
+  @Nullable
+  static GrpcAdmission create(ReadableMap settings, ScheduledExecutorService scheduler) {
+    if (!settings.hasKey("maxConcurrentCalls") || settings.isNull("maxConcurrentCalls")) {
+      return null;
+    }
+
+    int maxInFlight = settings.getInt("maxConcurrentCalls");
+    int maxQueued = settings.hasKey("maxQueuedCalls") ? settings.getInt("maxQueuedCalls") : Integer.MAX_VALUE;
+
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxConcurrentCalls must be at least 1");
+    }
+
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("maxQueuedCalls must not be negative");
+    }
+
+    return new GrpcAdmission(maxInFlight, maxQueued, scheduler);
+  }
+
+  static int parsePriority(@Nullable ReadableMap options, int defaultPriority) {
+    if (options == null || !options.hasKey("priority") || options.isNull("priority")) {
+      return defaultPriority;
+    }
+
+    String priority = options.getString("priority");
+
+    for (int i = 0; i < PRIORITY_NAMES.length; i++) {
+      if (PRIORITY_NAMES[i].equals(priority)) {
+        return i;
+      }
+    }
+
+    throw new IllegalArgumentException("Unsupported priority: " + priority);
+  }
+
+  /**
+   * Starts the call right away if there is a free slot, otherwise queues it. If the call is
+   * dropped, {@code listener} is closed with the reason, as if the call had failed.
+   */
+  void submit(GrpcCall call, int priority, @Nullable Deadline deadline, ClientCall.Listener<byte[]> listener, Starter starter) {
+    Ticket ticket = new Ticket(call, priority, deadline, listener, starter);
+    Ticket displaced = null;
+    Status rejection = null;
+    boolean queued = false;
+
+    synchronized (this) {
+      if (closed) {
+        rejection = Status.UNAVAILABLE.withDescription("Client destroyed");
+      } else if (inFlight < maxInFlight && queue.isEmpty()) {
+        inFlight++;
+        recordWait(priority, 0);
+      } else if (queue.size() < maxQueued || (displaced = lowestBelow(priority)) != null) {
+        if (displaced != null) {
+          queue.remove(displaced);
+          rejected++;
+        }
+
+        ticket.sequence = sequence++;
+        queue.add(ticket);
+        call.setTicket(ticket);
+        queued = true;
+      } else {
+        rejected++;
+        rejection = Status.RESOURCE_EXHAUSTED.withDescription("Too many queued calls");
+      }
+    }
+
+    if (rejection != null) {
+      listener.onClose(rejection, new Metadata());
+
+      return;
+    }
+
+    if (displaced != null) {
+      displaced.drop(Status.RESOURCE_EXHAUSTED.withDescription("Displaced by a call with a higher priority"));
+    }
+
+    if (queued) {
+      ticket.scheduleExpiry();
+      // A slot may have been freed while the queue was still being drained.
+      startQueued();
+    } else {
+      start(call, starter, listener);
+    }
+  }
+
+  /**
+   * Fails the queued calls and stops admitting new ones.
+   */
+  void close() {
+    Ticket[] tickets;
+
+    synchronized (this) {
+      closed = true;
+      tickets = queue.toArray(new Ticket[0]);
+
+      queue.clear();
+      notifyAll();
+    }
+
+    for (Ticket ticket : tickets) {
+      ticket.drop(Status.UNAVAILABLE.withDescription("Client destroyed"));
+    }
+  }
+
+  /**
+   * Waits until every queued call has started or been dropped. Returns false on timeout.
+   */
+  synchronized boolean awaitQueue(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    while (!queue.isEmpty()) {
+      long remaining = deadline - System.nanoTime();
+
+      if (remaining <= 0) {
+        return false;
+      }
+
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+
+    return true;
+  }
+
+  public synchronized WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+    WritableMap priorities = Arguments.createMap();
+
+    for (int i = 0; i < PRIORITY_NAMES.length; i++) {
+      WritableMap priority = Arguments.createMap();
+
+      priority.putDouble("admitted", admitted[i]);
+      priority.putDouble("averageQueueWait", admitted[i] == 0 ? 0 : toMillis(totalWait[i]) / admitted[i]);
+      priority.putDouble("maxQueueWait", toMillis(maxWait[i]));
+
+      priorities.putMap(PRIORITY_NAMES[i], priority);
+    }
+
+    metrics.putInt("maxConcurrentCalls", maxInFlight);
+    metrics.putInt("inFlight", inFlight);
+    metrics.putInt("queued", queue.size());
+    metrics.putDouble("rejected", rejected);
+    metrics.putDouble("expired", expired);
+    metrics.putDouble("cancelled", cancelled);
+    metrics.putMap("priorities", priorities);
+
+    return metrics;
+  }
+
+  /**
+   * The newest queued call of a lower priority than the given one, if any.
+   */
+  @Nullable
+  private Ticket lowestBelow(int priority) {
+    Ticket lowest = null;
+
+    for (Ticket ticket : queue) {
+      if (ticket.priority > priority && (lowest == null || ticket.priority > lowest.priority || (ticket.priority == lowest.priority && ticket.sequence > lowest.sequence))) {
+        lowest = ticket;
+      }
+    }
+
+    return lowest;
+  }
+
+  /**
+   * Starts an admitted call with a listener that releases its slot once it closes. If the call
+   * can't be started, the slot is released and the listener closed right away, since the call
+   * will never close it.
+   */
+  private void start(GrpcCall call, Starter starter, ClientCall.Listener<byte[]> listener) {
+    final AtomicBoolean closed = new AtomicBoolean();
+    ClientCall.Listener<byte[]> tracked = new ForwardingClientCallListener.SimpleForwardingClientCallListener<byte[]>(listener) {
+      @Override
+      public void onClose(Status status, Metadata trailers) {
+        if (!closed.compareAndSet(false, true)) {
+          return;
+        }
+
+        try {
+          super.onClose(status, trailers);
+        } finally {
+          release();
+        }
+      }
+    };
+
+    try {
+      starter.start(tracked);
+    } catch (RuntimeException e) {
+      // In case it got as far as starting the call, whose close is then ignored.
+      call.cancel("Failed to start", e);
+      tracked.onClose(Status.INTERNAL.withDescription("Failed to start the call").withCause(e), new Metadata());
+    }
+  }
+
+  private void release() {
+    synchronized (this) {
+      inFlight--;
+    }
+
+    startQueued();
+  }
+
+  private void startQueued() {
+    while (true) {
+      Ticket ticket;
+
+      synchronized (this) {
+        if (inFlight >= maxInFlight || queue.isEmpty()) {
+          return;
+        }
+
+        ticket = queue.poll();
+        inFlight++;
+
+        if (queue.isEmpty()) {
+          notifyAll();
+        }
+      }
+
+      if (!ticket.start()) {
+        synchronized (this) {
+          inFlight--;
+        }
+      }
+    }
+  }
+
+  private synchronized void recordWait(int priority, long wait) {
+    admitted[priority]++;
+    totalWait[priority] += wait;
+    maxWait[priority] = Math.max(maxWait[priority], wait);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  /**
+   * A queued call. Starting, cancelling and dropping it race, and only the first of them takes the
+   * ticket back from the call.
+   */
+  class Ticket {
+    final GrpcCall call;
+    final int priority;
+    @Nullable
+    final Deadline deadline;
+    final ClientCall.Listener<byte[]> listener;
+    final Starter starter;
+    final long enqueuedAt = System.nanoTime();
+    long sequence;
+    private ScheduledFuture<?> expiry;
+
+    Ticket(GrpcCall call, int priority, @Nullable Deadline deadline, ClientCall.Listener<byte[]> listener, Starter starter) {
+      this.call = call;
+      this.priority = priority;
+      this.deadline = deadline;
+      this.listener = listener;
+      this.starter = starter;
+    }
+
+    void scheduleExpiry() {
+      if (deadline == null) {
+        return;
+      }
+
+      try {
+        ScheduledFuture<?> expiry = scheduler.schedule(this::expire, deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+        synchronized (this) {
+          this.expiry = expiry;
+        }
+      } catch (RejectedExecutionException e) {
+        // The module is shutting down and cancels every call.
+      }
+    }
+
+    /**
+     * Called once a cancellation took the ticket back from the call.
+     */
+    void cancel() {
+      synchronized (GrpcAdmission.this) {
+        if (queue.remove(this)) {
+          cancelled++;
+
+          if (queue.isEmpty()) {
+            GrpcAdmission.this.notifyAll();
+          }
+        }
+      }
+
+      cancelExpiry();
+      listener.onClose(Status.CANCELLED.withDescription("Cancelled by app"), new Metadata());
+    }
+
+    private boolean start() {
+      cancelExpiry();
+
+      if (deadline != null && deadline.isExpired()) {
+        synchronized (GrpcAdmission.this) {
+          expired++;
+        }
+
+        drop(Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded while queued"));
+
+        return false;
+      }
+
+      return call.startQueued(this, () -> {
+        recordWait(priority, System.nanoTime() - enqueuedAt);
+        GrpcAdmission.this.start(call, starter, listener);
+      });
+    }
+
+    private void expire() {
+      boolean removed;
+
+      synchronized (GrpcAdmission.this) {
+        removed = queue.remove(this);
+
+        if (removed) {
+          expired++;
+
+          if (queue.isEmpty()) {
+            GrpcAdmission.this.notifyAll();
+          }
+        }
+      }
+
+      if (removed) {
+        drop(Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded while queued"));
+      }
+    }
+
+    private void drop(Status status) {
+      if (call.takeTicket(this)) {
+        listener.onClose(status, new Metadata());
+      }
+    }
+
+    private void cancelExpiry() {
+      ScheduledFuture<?> expiry;
+
+      synchronized (this) {
+        expiry = this.expiry;
+      }
+
+      if (expiry != null) {
+        expiry.cancel(false);
+      }
+    }
+  }
+}
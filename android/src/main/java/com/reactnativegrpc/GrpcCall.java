@@ -0,0 +1,219 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.grpc.ClientCall;
+
+public class GrpcCall {
+  private final ClientCall<byte[], byte[]> call;
+  private final GrpcEventDispatcher eventDispatcher;
+  private final List<Integer> targets = new CopyOnWriteArrayList<>();
+  private final AtomicBoolean readyRequested = new AtomicBoolean();
+
+  @Nullable
+  private volatile GrpcCompression compression;
+  private volatile boolean receiveHeaders = true;
+  private volatile boolean receiveTrailers = true;
+  private Map<String, String> headers;
+  private boolean joinable = true;
+  @Nullable
+  private GrpcAdmission.Ticket ticket;
+
+  public GrpcCall(ClientCall<byte[], byte[]> call, GrpcEventDispatcher eventDispatcher) {
+    this.call = call;
+    this.eventDispatcher = eventDispatcher;
+  }
+
+  /**
+   * The JS call ids that receive the events of this call. Background calls have none.
+   */
+  public List<Integer> getTargets() {
+    return targets;
+  }
+
+  public void addTarget(int id) {
+    targets.add(id);
+  }
+
+  public ClientCall<byte[], byte[]> getCall() {
+    return call;
+  }
+
+  public GrpcEventDispatcher getEventDispatcher() {
+    return eventDispatcher;
+  }
+
+  /**
+   * Adds a target to a call that hasn't received a message yet. Returns false if the call can't be
+   * joined.
+   */
+  public synchronized boolean join(int id, Map<Integer, GrpcCall> registry) {
+    if (!joinable) {
+      return false;
+    }
+
+    // Registered under the lock so that onClose, which seals the call first, always removes it.
+    targets.add(id);
+    registry.put(id, this);
+
+    return true;
+  }
+
+  @Nullable
+  public synchronized Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Removes a target unless it's the last one, in which case the call can no longer be joined and
+   * the caller should cancel it.
+   */
+  public synchronized boolean leave(int id) {
+    if (targets.size() > 1 && targets.remove(Integer.valueOf(id))) {
+      return true;
+    }
+
+    joinable = false;
+
+    return false;
+  }
+
+  /**
+   * Records the received headers and returns the targets to forward them to.
+   */
+  public synchronized List<Integer> receiveHeaders(Map<String, String> headers) {
+    this.headers = headers;
+
+    return new ArrayList<>(targets);
+  }
+
+  /**
+   * Stops further targets from joining, once a message has been received or the call has closed.
+   */
+  public synchronized void seal() {
+    joinable = false;
+  }
+
+  public synchronized boolean isSealed() {
+    return !joinable;
+  }
+
+  /**
+   * Whether headers and trailers are converted and sent to JS. Set before the call starts.
+   */
+  public void setMetadataEvents(boolean receiveHeaders, boolean receiveTrailers) {
+    this.receiveHeaders = receiveHeaders;
+    this.receiveTrailers = receiveTrailers;
+  }
+
+  public boolean receivesHeaders() {
+    return receiveHeaders;
+  }
+
+  public boolean receivesTrailers() {
+    return receiveTrailers;
+  }
+
+  /**
+   * Only compresses messages at or above the threshold of the compression settings.
+   */
+  public void setCompression(GrpcCompression compression) {
+    this.compression = compression;
+  }
+
+  public void sendMessage(byte[] message) {
+    GrpcCompression compression = this.compression;
+
+    if (compression != null) {
+      call.setMessageCompression(compression.shouldCompress(message.length));
+    }
+
+    call.sendMessage(message);
+  }
+
+  public void request(int count) {
+    call.request(count);
+  }
+
+  public void halfClose() {
+    call.halfClose();
+  }
+
+  public void cancel(String message, Throwable cause) {
+    GrpcAdmission.Ticket ticket;
+
+    synchronized (this) {
+      ticket = this.ticket;
+
+      if (ticket == null) {
+        call.cancel(message, cause);
+
+        return;
+      }
+
+      this.ticket = null;
+    }
+
+    // The call is still queued and was never started.
+    ticket.cancel();
+  }
+
+  /**
+   * Set while the call waits for admission. Starting, cancelling or dropping the call first takes
+   * the ticket back, so only one of them happens.
+   */
+  synchronized void setTicket(GrpcAdmission.Ticket ticket) {
+    this.ticket = ticket;
+  }
+
+  synchronized boolean takeTicket(GrpcAdmission.Ticket ticket) {
+    if (this.ticket != ticket) {
+      return false;
+    }
+
+    this.ticket = null;
+
+    return true;
+  }
+
+  /**
+   * Runs {@code start} unless the call was cancelled or dropped while queued. A cancellation can't
+   * reach the underlying call until it has started.
+   */
+  synchronized boolean startQueued(GrpcAdmission.Ticket ticket, Runnable start) {
+    if (!takeTicket(ticket)) {
+      return false;
+    }
+
+    start.run();
+
+    return true;
+  }
+
+  /**
+   * Returns whether the call can accept more messages without buffering. If it can't, a {@code ready}
+   * event is emitted once it can.
+   */
+  public boolean requestReady() {
+    // Set the flag before checking so an onReady racing with this check is never missed.
+    readyRequested.set(true);
+
+    if (call.isReady()) {
+      readyRequested.set(false);
+
+      return true;
+    }
+
+    return false;
+  }
+
+  public boolean takeReadyRequest() {
+    return readyRequested.compareAndSet(true, false);
+  }
+}
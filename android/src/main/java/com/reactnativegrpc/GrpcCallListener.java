@@ -0,0 +1,125 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Forwards the events of a call to every JS call id targeting it, and removes those ids from the
+ * call registry once the call closes. The status and trailers are sent as one {@code close} event,
+ * which also carries the response of single response calls so that a unary call needs just one
+ * event when JS doesn't ask for its headers.
+ */
+public class GrpcCallListener extends ClientCall.Listener<byte[]> {
+  /**
+   * Observes the converted events of a call, e.g. to store its response.
+   */
+  public interface Observer {
+    void onHeaders(Map<String, String> headers);
+
+    void onMessage(String payload);
+
+    void onClose(Status status, Map<String, String> trailers);
+  }
+
+  private final GrpcCall call;
+  private final Map<Integer, GrpcCall> registry;
+  private final GrpcEventDispatcher eventDispatcher;
+  private final boolean autoRequest;
+  private final boolean deferResponse;
+  @Nullable
+  private final Observer observer;
+
+  private String deferredResponse;
+
+  public GrpcCallListener(GrpcCall call, Map<Integer, GrpcCall> registry, boolean autoRequest, boolean deferResponse, @Nullable Observer observer) {
+    this.call = call;
+    this.registry = registry;
+    this.eventDispatcher = call.getEventDispatcher();
+    this.autoRequest = autoRequest;
+    this.deferResponse = deferResponse;
+    this.observer = observer;
+  }
+
+  @Override
+  public void onHeaders(Metadata headers) {
+    if (observer == null && !call.receivesHeaders()) {
+      return;
+    }
+
+    Map<String, String> payload = GrpcMetadataConverter.toMap(headers);
+
+    if (observer != null) {
+      observer.onHeaders(payload);
+    }
+
+    if (call.receivesHeaders()) {
+      for (int id : call.receiveHeaders(payload)) {
+        eventDispatcher.emitHeaders(id, payload);
+      }
+    }
+  }
+
+  @Override
+  public void onMessage(byte[] data) {
+    String payload = GrpcPayloadCodec.encode(data);
+
+    call.seal();
+
+    if (observer != null) {
+      observer.onMessage(payload);
+    }
+
+    if (deferResponse) {
+      deferredResponse = payload;
+    } else {
+      for (int id : call.getTargets()) {
+        eventDispatcher.emitResponse(id, payload);
+      }
+    }
+
+    if (autoRequest) {
+      call.request(1);
+    }
+  }
+
+  @Override
+  public void onReady() {
+    if (call.takeReadyRequest()) {
+      for (int id : call.getTargets()) {
+        eventDispatcher.emitReady(id);
+      }
+    }
+  }
+
+  @Override
+  public void onClose(Status status, Metadata trailers) {
+    call.seal();
+
+    for (int id : call.getTargets()) {
+      registry.remove(id, call);
+    }
+
+    Map<String, String> trailersMap = null;
+
+    if (observer != null || call.receivesTrailers()) {
+      trailersMap = GrpcMetadataConverter.toMap(trailers);
+    }
+
+    if (observer != null) {
+      observer.onClose(status, trailersMap);
+    }
+
+    String error = status.isOk() ? null : status.asException(trailers).getLocalizedMessage();
+    Map<String, String> trailersPayload = call.receivesTrailers() ? trailersMap : null;
+    String payload = status.isOk() ? deferredResponse : null;
+
+    for (int id : call.getTargets()) {
+      eventDispatcher.emitClose(id, status, error, trailersPayload, payload);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Records per method latency, status codes, in-flight calls and message sizes. Only installed when
+ * the {@code metrics} setting is present, so calls pay nothing for it otherwise.
+ */
+public class GrpcCallMetrics implements ClientInterceptor {
+  private static final long[] LATENCY_BUCKETS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+  private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+  private final long interval;
+
+  private GrpcCallMetrics(long interval) {
+    this.interval = interval;
+  }
+
+  @Nullable
+  static GrpcCallMetrics create(ReadableMap settings) {
+    if (!settings.hasKey("metrics") || settings.isNull("metrics")) {
+      return null;
+    }
+
+    if (settings.getType("metrics") == ReadableType.Boolean) {
+      return settings.getBoolean("metrics") ? new GrpcCallMetrics(0) : null;
+    }
+
+    ReadableMap options = settings.getMap("metrics");
+    long interval = options.hasKey("interval") ? (long) options.getDouble("interval") : 0;
+
+    if (interval < 0) {
+      throw new IllegalArgumentException("metrics.interval must not be negative");
+    }
+
+    return new GrpcCallMetrics(interval);
+  }
+
+  /**
+   * Milliseconds between {@code grpc-metrics} events, or 0 if they are disabled.
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    final MethodStats stats = getStats(method.getFullMethodName());
+    final CallTracer tracer = new CallTracer(stats);
+
+    return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions.withStreamTracerFactory(tracer))) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        tracer.startedAt = System.nanoTime();
+        stats.inFlight.incrementAndGet();
+
+        super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+          @Override
+          public void onClose(Status status, Metadata trailers) {
+            long now = System.nanoTime();
+            long closedAt = tracer.closedAt;
+
+            stats.inFlight.decrementAndGet();
+            stats.recordCall(status, now - tracer.startedAt, closedAt != 0 ? now - closedAt : -1);
+
+            super.onClose(status, trailers);
+          }
+        }, headers);
+      }
+    };
+  }
+
+  public WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+
+    for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+      metrics.putMap(entry.getKey(), entry.getValue().getMetrics());
+    }
+
+    return metrics;
+  }
+
+  private MethodStats getStats(String method) {
+    MethodStats stats = methods.get(method);
+
+    if (stats == null) {
+      stats = new MethodStats();
+
+      MethodStats existing = methods.putIfAbsent(method, stats);
+
+      if (existing != null) {
+        stats = existing;
+      }
+    }
+
+    return stats;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  static class MethodStats {
+    final AtomicLong inFlight = new AtomicLong();
+    final AtomicLong sentMessages = new AtomicLong();
+    final AtomicLong receivedMessages = new AtomicLong();
+    final AtomicLong sentBytes = new AtomicLong();
+    final AtomicLong sentWireBytes = new AtomicLong();
+    final AtomicLong receivedBytes = new AtomicLong();
+    final AtomicLong receivedWireBytes = new AtomicLong();
+
+    private final long[] latencyCounts = new long[LATENCY_BUCKETS.length + 1];
+    private final Map<String, Long> statusCodes = new TreeMap<>();
+    private long calls;
+    private long totalLatency;
+    private long maxLatency;
+    private long callbacks;
+    private long totalCallbackDelay;
+    private long maxCallbackDelay;
+
+    synchronized void recordCall(Status status, long latency, long callbackDelay) {
+      double latencyMillis = toMillis(latency);
+      int bucket = 0;
+
+      while (bucket < LATENCY_BUCKETS.length && latencyMillis > LATENCY_BUCKETS[bucket]) {
+        bucket++;
+      }
+
+      calls++;
+      latencyCounts[bucket]++;
+      totalLatency += latency;
+      maxLatency = Math.max(maxLatency, latency);
+
+      String code = status.getCode().name();
+      Long count = statusCodes.get(code);
+
+      statusCodes.put(code, count == null ? 1 : count + 1);
+
+      if (callbackDelay >= 0) {
+        callbacks++;
+        totalCallbackDelay += callbackDelay;
+        maxCallbackDelay = Math.max(maxCallbackDelay, callbackDelay);
+      }
+    }
+
+    synchronized WritableMap getMetrics() {
+      WritableMap metrics = Arguments.createMap();
+      WritableMap codes = Arguments.createMap();
+      WritableArray buckets = Arguments.createArray();
+      WritableArray counts = Arguments.createArray();
+
+      for (Map.Entry<String, Long> entry : statusCodes.entrySet()) {
+        codes.putDouble(entry.getKey(), entry.getValue());
+      }
+
+      for (long bound : LATENCY_BUCKETS) {
+        buckets.pushDouble(bound);
+      }
+
+      for (long count : latencyCounts) {
+        counts.pushDouble(count);
+      }
+
+      metrics.putDouble("calls", calls);
+      metrics.putDouble("inFlight", inFlight.get());
+      metrics.putMap("statusCodes", codes);
+      metrics.putDouble("averageLatency", calls == 0 ? 0 : toMillis(totalLatency) / calls);
+      metrics.putDouble("maxLatency", toMillis(maxLatency));
+      metrics.putDouble("p50Latency", percentile(0.5));
+      metrics.putDouble("p90Latency", percentile(0.9));
+      metrics.putDouble("p99Latency", percentile(0.99));
+      metrics.putArray("latencyBuckets", buckets);
+      metrics.putArray("latencyCounts", counts);
+      metrics.putDouble("averageCallbackDelay", callbacks == 0 ? 0 : toMillis(totalCallbackDelay) / callbacks);
+      metrics.putDouble("maxCallbackDelay", toMillis(maxCallbackDelay));
+      metrics.putDouble("sentMessages", sentMessages.get());
+      metrics.putDouble("receivedMessages", receivedMessages.get());
+      metrics.putDouble("sentBytes", sentBytes.get());
+      metrics.putDouble("sentWireBytes", sentWireBytes.get());
+      metrics.putDouble("receivedBytes", receivedBytes.get());
+      metrics.putDouble("receivedWireBytes", receivedWireBytes.get());
+
+      return metrics;
+    }
+
+    /**
+     * Upper bound of the bucket holding the percentile, or the maximum for the overflow bucket.
+     */
+    private double percentile(double fraction) {
+      if (calls == 0) {
+        return 0;
+      }
+
+      long rank = (long) Math.ceil(calls * fraction);
+      long seen = 0;
+
+      for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+        seen += latencyCounts[i];
+
+        if (seen >= rank) {
+          return Math.min(LATENCY_BUCKETS[i], toMillis(maxLatency));
+        }
+      }
+
+      return toMillis(maxLatency);
+    }
+  }
+
+  /**
+   * Creates the stream tracers of one call; retries and hedging may create several.
+   */
+  private static class CallTracer extends ClientStreamTracer.Factory {
+    final MethodStats stats;
+    volatile long startedAt;
+    volatile long closedAt;
+
+    CallTracer(MethodStats stats) {
+      this.stats = stats;
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+      return new ClientStreamTracer() {
+        @Override
+        public void outboundMessage(int seqNo) {
+          stats.sentMessages.incrementAndGet();
+        }
+
+        @Override
+        public void inboundMessage(int seqNo) {
+          stats.receivedMessages.incrementAndGet();
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+          stats.sentWireBytes.addAndGet(bytes);
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+          stats.sentBytes.addAndGet(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+          stats.receivedWireBytes.addAndGet(bytes);
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+          stats.receivedBytes.addAndGet(bytes);
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+          closedAt = System.nanoTime();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import io.grpc.okhttp.OkHttpChannelBuilder;
+
+/**
+ * Hook for app native code to customize channels beyond what can be expressed from JS, such as
+ * the transport executor or socket factory. Pass an implementation to {@link GrpcPackage}.
+ */
+public interface GrpcChannelConfigurator {
+  void configure(OkHttpChannelBuilder builder, ReadableMap settings);
+}
@@ -0,0 +1,169 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.ClientInterceptor;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+
+final class GrpcChannelFactory {
+  private GrpcChannelFactory() {
+  }
+
+  @SuppressWarnings("deprecation")
+  static ManagedChannel create(ReadableMap options, GrpcExecutor executor, GrpcCompression compression, @Nullable GrpcChannelConfigurator configurator, @Nullable GrpcInterceptorProvider interceptorProvider) {
+    if (!options.hasKey("host")) {
+      throw new IllegalArgumentException("host is required");
+    }
+
+    String host = options.getString("host");
+
+    OkHttpChannelBuilder channelBuilder;
+
+    if (options.hasKey("addresses") && !options.isNull("addresses")) {
+      GrpcStaticNameResolverFactory resolverFactory = GrpcStaticNameResolverFactory.create(host, options.getArray("addresses"));
+
+      channelBuilder = OkHttpChannelBuilder.forTarget(resolverFactory.getTarget());
+      channelBuilder.nameResolverFactory(resolverFactory);
+    } else {
+      channelBuilder = OkHttpChannelBuilder.forTarget(host);
+    }
+
+    if (options.hasKey("loadBalancingPolicy")) {
+      String policy = options.getString("loadBalancingPolicy");
+
+      if (LoadBalancerRegistry.getDefaultRegistry().getProvider(policy) == null) {
+        throw new IllegalArgumentException("Unsupported load balancing policy: " + policy);
+      }
+
+      channelBuilder.defaultLoadBalancingPolicy(policy);
+    }
+
+    if (executor.isDirect()) {
+      channelBuilder.directExecutor();
+    } else {
+      channelBuilder.executor(executor);
+    }
+
+    channelBuilder.compressorRegistry(compression.getCompressorRegistry());
+    channelBuilder.decompressorRegistry(compression.getDecompressorRegistry());
+
+    if (options.hasKey("insecure") && options.getBoolean("insecure")) {
+      channelBuilder.usePlaintext();
+    }
+
+    // responseSizeLimit is the name older versions of this module read.
+    String responseLimitKey = options.hasKey("responseLimit") ? "responseLimit" : "responseSizeLimit";
+
+    if (options.hasKey(responseLimitKey)) {
+      channelBuilder.maxInboundMessageSize(getPositiveInt(options, responseLimitKey));
+    }
+
+    if (options.hasKey("maxMetadataSize")) {
+      channelBuilder.maxInboundMetadataSize(getPositiveInt(options, "maxMetadataSize"));
+    }
+
+    if (options.hasKey("flowControlWindow")) {
+      channelBuilder.flowControlWindow(getPositiveInt(options, "flowControlWindow"));
+    }
+
+    if (options.hasKey("idleTimeout")) {
+      channelBuilder.idleTimeout(getPositiveInt(options, "idleTimeout"), TimeUnit.MILLISECONDS);
+    }
+
+    if (options.hasKey("userAgent")) {
+      channelBuilder.userAgent(options.getString("userAgent"));
+    }
+
+    if (options.hasKey("serviceConfig")) {
+      if (options.getType("serviceConfig") != ReadableType.Map) {
+        throw new IllegalArgumentException("serviceConfig must be an object");
+      }
+
+      channelBuilder.defaultServiceConfig(options.getMap("serviceConfig").toHashMap());
+    }
+
+    if (options.hasKey("retry")) {
+      if (options.getBoolean("retry")) {
+        channelBuilder.enableRetry();
+      } else {
+        channelBuilder.disableRetry();
+      }
+    }
+
+    if (options.hasKey("maxRetryAttempts")) {
+      channelBuilder.maxRetryAttempts(getPositiveInt(options, "maxRetryAttempts"));
+    }
+
+    if (options.hasKey("maxHedgedAttempts")) {
+      channelBuilder.maxHedgedAttempts(getPositiveInt(options, "maxHedgedAttempts"));
+    }
+
+    if (options.hasKey("retryBufferSize")) {
+      channelBuilder.retryBufferSize(getPositiveInt(options, "retryBufferSize"));
+    }
+
+    if (options.hasKey("perRpcBufferLimit")) {
+      channelBuilder.perRpcBufferLimit(getPositiveInt(options, "perRpcBufferLimit"));
+    }
+
+    boolean keepalive = true;
+
+    if (options.hasKey("keepalive")) {
+      keepalive = options.getBoolean("keepalive");
+    }
+
+    if (keepalive) {
+      int keepAliveTimeout = 20;
+      long keepaliveInterval = Long.MAX_VALUE;
+
+      if (options.hasKey("keepaliveInterval")) {
+        keepaliveInterval = options.getInt("keepaliveInterval");
+      }
+
+      if (options.hasKey("keepaliveTimeout")) {
+        keepAliveTimeout = options.getInt("keepaliveTimeout");
+      }
+
+      channelBuilder
+        .keepAliveWithoutCalls(true)
+        .keepAliveTime(keepaliveInterval, TimeUnit.SECONDS)
+        .keepAliveTimeout(keepAliveTimeout, TimeUnit.SECONDS);
+    }
+
+    if (interceptorProvider != null) {
+      List<ClientInterceptor> interceptors = interceptorProvider.getInterceptors(options);
+
+      if (interceptors != null && !interceptors.isEmpty()) {
+        channelBuilder.intercept(interceptors);
+      }
+    }
+
+    if (configurator != null) {
+      configurator.configure(channelBuilder, options);
+    }
+
+    return channelBuilder.build();
+  }
+
+  private static int getPositiveInt(ReadableMap options, String key) {
+    if (options.getType(key) != ReadableType.Number) {
+      throw new IllegalArgumentException(key + " must be a number");
+    }
+
+    double value = options.getDouble(key);
+
+    if (value < 1 || value > Integer.MAX_VALUE || value != Math.floor(value)) {
+      throw new IllegalArgumentException(key + " must be a positive integer");
+    }
+
+    return (int) value;
+  }
+}
@@ -0,0 +1,286 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Spreads calls over several channels, each with its own HTTP/2 connection, picking the channel
+ * with the fewest active calls. The first {@code streamingChannels} channels can be reserved for
+ * streaming calls so that long streams don't share a connection with unary calls.
+ */
+public class GrpcChannelPool extends ManagedChannel {
+  interface ChannelSupplier {
+    ManagedChannel create();
+  }
+
+  private final ManagedChannel[] channels;
+  private final AtomicInteger[] activeCalls;
+  private final int streamingChannels;
+  private final AtomicInteger nextChannel = new AtomicInteger();
+
+  private GrpcChannelPool(ManagedChannel[] channels, int streamingChannels) {
+    this.channels = channels;
+    this.streamingChannels = streamingChannels;
+    this.activeCalls = new AtomicInteger[channels.length];
+
+    for (int i = 0; i < channels.length; i++) {
+      activeCalls[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Returns a single channel unless the {@code channelPool} setting asks for more than one.
+   */
+  static ManagedChannel create(ReadableMap settings, ChannelSupplier supplier) {
+    if (!settings.hasKey("channelPool") || settings.isNull("channelPool")) {
+      return supplier.create();
+    }
+
+    ReadableMap options = settings.getMap("channelPool");
+    int size = options.hasKey("size") ? options.getInt("size") : 1;
+    int streamingChannels = options.hasKey("streamingChannels") ? options.getInt("streamingChannels") : 0;
+
+    if (size < 1) {
+      throw new IllegalArgumentException("channelPool.size must be at least 1");
+    }
+
+    if (streamingChannels < 0 || (streamingChannels > 0 && streamingChannels >= size)) {
+      throw new IllegalArgumentException("channelPool.streamingChannels must leave at least one channel for unary calls");
+    }
+
+    if (size == 1) {
+      return supplier.create();
+    }
+
+    ManagedChannel[] channels = new ManagedChannel[size];
+
+    for (int i = 0; i < size; i++) {
+      channels[i] = supplier.create();
+    }
+
+    return new GrpcChannelPool(channels, streamingChannels);
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+    final int index = select(method.getType());
+    final AtomicInteger active = activeCalls[index];
+
+    return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(channels[index].newCall(method, callOptions)) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        active.incrementAndGet();
+
+        super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+          @Override
+          public void onClose(Status status, Metadata trailers) {
+            active.decrementAndGet();
+
+            super.onClose(status, trailers);
+          }
+        }, headers);
+      }
+    };
+  }
+
+  private int select(MethodDescriptor.MethodType methodType) {
+    int from = 0;
+    int to = channels.length;
+
+    if (streamingChannels > 0) {
+      if (methodType == MethodDescriptor.MethodType.UNARY) {
+        from = streamingChannels;
+      } else {
+        to = streamingChannels;
+      }
+    }
+
+    int count = to - from;
+    // Rotate the starting point so that ties don't always go to the same channel.
+    int offset = (nextChannel.getAndIncrement() & Integer.MAX_VALUE) % count;
+    int selected = from + offset;
+
+    for (int i = 1; i < count; i++) {
+      int index = from + (offset + i) % count;
+
+      if (activeCalls[index].get() < activeCalls[selected].get()) {
+        selected = index;
+      }
+    }
+
+    return selected;
+  }
+
+  @Override
+  public String authority() {
+    return channels[0].authority();
+  }
+
+  @Override
+  public ManagedChannel shutdown() {
+    for (ManagedChannel channel : channels) {
+      channel.shutdown();
+    }
+
+    return this;
+  }
+
+  @Override
+  public ManagedChannel shutdownNow() {
+    for (ManagedChannel channel : channels) {
+      channel.shutdownNow();
+    }
+
+    return this;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    for (ManagedChannel channel : channels) {
+      if (!channel.isShutdown()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    for (ManagedChannel channel : channels) {
+      if (!channel.isTerminated()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    for (ManagedChannel channel : channels) {
+      if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * The best state of any channel in the pool: the pool can take calls as soon as one channel can.
+   */
+  @Override
+  public ConnectivityState getState(boolean requestConnection) {
+    boolean connecting = false;
+    boolean failing = false;
+    boolean idle = false;
+
+    for (ManagedChannel channel : channels) {
+      switch (channel.getState(requestConnection)) {
+        case READY:
+          return ConnectivityState.READY;
+        case CONNECTING:
+          connecting = true;
+          break;
+        case TRANSIENT_FAILURE:
+          failing = true;
+          break;
+        case IDLE:
+          idle = true;
+          break;
+        default:
+          break;
+      }
+    }
+
+    if (connecting) {
+      return ConnectivityState.CONNECTING;
+    }
+
+    if (failing) {
+      return ConnectivityState.TRANSIENT_FAILURE;
+    }
+
+    return idle ? ConnectivityState.IDLE : ConnectivityState.SHUTDOWN;
+  }
+
+  @Override
+  public void notifyWhenStateChanged(final ConnectivityState source, final Runnable callback) {
+    final AtomicBoolean notified = new AtomicBoolean();
+
+    if (getState(false) != source) {
+      callback.run();
+
+      return;
+    }
+
+    for (ManagedChannel channel : channels) {
+      watchChannel(channel, source, notified, callback);
+    }
+  }
+
+  private void watchChannel(final ManagedChannel channel, final ConnectivityState source, final AtomicBoolean notified, final Runnable callback) {
+    channel.notifyWhenStateChanged(channel.getState(false), () -> {
+      if (notified.get()) {
+        return;
+      }
+
+      if (getState(false) != source) {
+        if (notified.compareAndSet(false, true)) {
+          callback.run();
+        }
+      } else if (!channel.isShutdown()) {
+        watchChannel(channel, source, notified, callback);
+      }
+    });
+  }
+
+  @Override
+  public void resetConnectBackoff() {
+    for (ManagedChannel channel : channels) {
+      channel.resetConnectBackoff();
+    }
+  }
+
+  @Override
+  public void enterIdle() {
+    for (ManagedChannel channel : channels) {
+      channel.enterIdle();
+    }
+  }
+
+  public WritableArray getMetrics() {
+    WritableArray metrics = Arguments.createArray();
+
+    for (int i = 0; i < channels.length; i++) {
+      WritableMap channel = Arguments.createMap();
+
+      channel.putString("lane", streamingChannels == 0 ? "shared" : i < streamingChannels ? "streaming" : "unary");
+      channel.putString("state", channels[i].getState(false).name());
+      channel.putInt("activeCalls", activeCalls[i].get());
+
+      metrics.pushMap(channel);
+    }
+
+    return metrics;
+  }
+}
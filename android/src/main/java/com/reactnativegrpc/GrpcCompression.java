@@ -0,0 +1,351 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+
+/**
+ * Per client codec registries. Besides gzip they include deflate and any codec registered with
+ * {@link #registerCodec}, all instrumented to report compression ratio and time. Messages smaller
+ * than {@code compressionLimit} bytes are sent uncompressed.
+ */
+public class GrpcCompression {
+  private static final List<Codec> extraCodecs = new CopyOnWriteArrayList<>();
+
+  private final CompressorRegistry compressorRegistry = CompressorRegistry.newEmptyInstance();
+  private final DecompressorRegistry decompressorRegistry;
+  private final Map<String, CodecStats> stats = new TreeMap<>();
+  private final int threshold;
+  private final AtomicLong skippedMessages = new AtomicLong();
+
+  GrpcCompression(ReadableMap settings) {
+    int level = Deflater.DEFAULT_COMPRESSION;
+
+    if (settings.hasKey("compressionLevel")) {
+      level = settings.getInt("compressionLevel");
+
+      if (level < 0 || level > 9) {
+        throw new IllegalArgumentException("compressionLevel must be between 0 and 9");
+      }
+    }
+
+    this.threshold = settings.hasKey("compressionLimit") ? settings.getInt("compressionLimit") : 0;
+
+    if (threshold < 0) {
+      throw new IllegalArgumentException("compressionLimit must not be negative");
+    }
+
+    DecompressorRegistry decompressors = DecompressorRegistry.emptyInstance().with(Codec.Identity.NONE, false);
+
+    compressorRegistry.register(Codec.Identity.NONE);
+
+    for (Codec codec : new Codec[]{new Gzip(level), new Deflate(level)}) {
+      decompressors = register(codec, decompressors);
+    }
+
+    for (Codec codec : extraCodecs) {
+      decompressors = register(codec, decompressors);
+    }
+
+    this.decompressorRegistry = decompressors;
+
+    checkCompressionName(settings);
+  }
+
+  void checkCompressionName(ReadableMap settings) {
+    if (settings.hasKey("compressionName")) {
+      String name = settings.getString("compressionName");
+
+      if (compressorRegistry.lookupCompressor(name) == null) {
+        throw new IllegalArgumentException("Unsupported compression: " + name);
+      }
+    }
+  }
+
+  /**
+   * Makes a codec, e.g. zstd, available to clients created afterwards, for both compressing
+   * requests with {@code compressionName} and decompressing responses.
+   */
+  public static void registerCodec(Codec codec) {
+    extraCodecs.add(codec);
+  }
+
+  public CompressorRegistry getCompressorRegistry() {
+    return compressorRegistry;
+  }
+
+  public DecompressorRegistry getDecompressorRegistry() {
+    return decompressorRegistry;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  public boolean shouldCompress(int messageSize) {
+    if (messageSize < threshold) {
+      skippedMessages.incrementAndGet();
+
+      return false;
+    }
+
+    return true;
+  }
+
+  public WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+    WritableMap codecs = Arguments.createMap();
+
+    for (Map.Entry<String, CodecStats> entry : stats.entrySet()) {
+      codecs.putMap(entry.getKey(), entry.getValue().getMetrics());
+    }
+
+    metrics.putInt("threshold", threshold);
+    metrics.putDouble("skippedMessages", skippedMessages.get());
+    metrics.putMap("codecs", codecs);
+
+    return metrics;
+  }
+
+  private DecompressorRegistry register(Codec codec, DecompressorRegistry decompressors) {
+    CodecStats codecStats = new CodecStats();
+    MeasuredCodec measured = new MeasuredCodec(codec, codecStats);
+
+    stats.put(codec.getMessageEncoding(), codecStats);
+    compressorRegistry.register(measured);
+
+    return decompressors.with(measured, true);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private static class CodecStats {
+    final AtomicLong compressedMessages = new AtomicLong();
+    final AtomicLong compressInputBytes = new AtomicLong();
+    final AtomicLong compressOutputBytes = new AtomicLong();
+    final AtomicLong compressTime = new AtomicLong();
+    final AtomicLong decompressedMessages = new AtomicLong();
+    final AtomicLong decompressInputBytes = new AtomicLong();
+    final AtomicLong decompressOutputBytes = new AtomicLong();
+    final AtomicLong decompressTime = new AtomicLong();
+
+    WritableMap getMetrics() {
+      WritableMap metrics = Arguments.createMap();
+      long compressedSize = compressOutputBytes.get();
+      long decompressedSize = decompressOutputBytes.get();
+
+      metrics.putDouble("compressedMessages", compressedMessages.get());
+      metrics.putDouble("compressRatio", compressedSize == 0 ? 0 : (double) compressInputBytes.get() / compressedSize);
+      metrics.putDouble("compressTime", toMillis(compressTime.get()));
+      metrics.putDouble("decompressedMessages", decompressedMessages.get());
+      metrics.putDouble("decompressRatio", decompressInputBytes.get() == 0 ? 0 : (double) decompressedSize / decompressInputBytes.get());
+      metrics.putDouble("decompressTime", toMillis(decompressTime.get()));
+
+      return metrics;
+    }
+  }
+
+  /**
+   * Counts the bytes and the time spent in the wrapped codec. Compression time includes writing the
+   * compressed bytes to the transport buffer, which is an in-memory copy.
+   */
+  private static class MeasuredCodec implements Codec {
+    private final Codec codec;
+    private final CodecStats stats;
+
+    MeasuredCodec(Codec codec, CodecStats stats) {
+      this.codec = codec;
+      this.stats = stats;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+      return codec.getMessageEncoding();
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+      stats.compressedMessages.incrementAndGet();
+
+      OutputStream counted = new FilterOutputStream(os) {
+        @Override
+        public void write(int b) throws IOException {
+          out.write(b);
+          stats.compressOutputBytes.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+          stats.compressOutputBytes.addAndGet(len);
+        }
+      };
+
+      long start = System.nanoTime();
+      final OutputStream compressed = codec.compress(counted);
+
+      stats.compressTime.addAndGet(System.nanoTime() - start);
+
+      return new FilterOutputStream(compressed) {
+        @Override
+        public void write(int b) throws IOException {
+          write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          long start = System.nanoTime();
+
+          out.write(b, off, len);
+
+          stats.compressTime.addAndGet(System.nanoTime() - start);
+          stats.compressInputBytes.addAndGet(len);
+        }
+
+        @Override
+        public void close() throws IOException {
+          long start = System.nanoTime();
+
+          out.close();
+
+          stats.compressTime.addAndGet(System.nanoTime() - start);
+        }
+      };
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+      stats.decompressedMessages.incrementAndGet();
+
+      InputStream counted = new FilterInputStream(is) {
+        @Override
+        public int read() throws IOException {
+          int b = in.read();
+
+          if (b != -1) {
+            stats.decompressInputBytes.incrementAndGet();
+          }
+
+          return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int count = in.read(b, off, len);
+
+          if (count > 0) {
+            stats.decompressInputBytes.addAndGet(count);
+          }
+
+          return count;
+        }
+      };
+
+      return new FilterInputStream(codec.decompress(counted)) {
+        @Override
+        public int read() throws IOException {
+          byte[] b = new byte[1];
+
+          return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          long start = System.nanoTime();
+          int count = in.read(b, off, len);
+
+          stats.decompressTime.addAndGet(System.nanoTime() - start);
+
+          if (count > 0) {
+            stats.decompressOutputBytes.addAndGet(count);
+          }
+
+          return count;
+        }
+      };
+    }
+  }
+
+  private static class Gzip implements Codec {
+    private final int level;
+
+    Gzip(int level) {
+      this.level = level;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+      return "gzip";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+      return new GZIPOutputStream(os) {
+        {
+          def.setLevel(level);
+        }
+      };
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+      return new Codec.Gzip().decompress(is);
+    }
+  }
+
+  private static class Deflate implements Codec {
+    private final int level;
+
+    Deflate(int level) {
+      this.level = level;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+      return "deflate";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) {
+      final Deflater deflater = new Deflater(level);
+
+      return new DeflaterOutputStream(os, deflater) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            // A deflater passed in isn't released by close().
+            deflater.end();
+          }
+        }
+      };
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) {
+      return new InflaterInputStream(is);
+    }
+  }
+}
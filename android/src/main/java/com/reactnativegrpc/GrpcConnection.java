@@ -1,16 +1,103 @@
 package com.reactnativegrpc;
 
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 
 public class GrpcConnection {
+  /**
+   * Settings that only affect how calls are started. Changing them updates the connection in place,
+   * any other change needs a new channel.
+   */
+  private static final Set<String> CALL_SETTINGS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+    "requestTimeout", "headers", "compression", "compressionName", "singleFlight", "eagerConnect", "drainTimeout")));
+
+  private static final long DEFAULT_DRAIN_TIMEOUT = 30_000;
+
   private ManagedChannel channel;
-  private ReadableMap settings;
+  private Channel callChannel;
+  private final GrpcEventDispatcher eventDispatcher;
+  private final GrpcExecutor executor;
+  private final GrpcCompression compression;
+  @Nullable
+  private final GrpcResponseCache responseCache;
+  private final GrpcSingleFlight singleFlight = new GrpcSingleFlight();
+  @Nullable
+  private final GrpcEndpointStats endpointStats;
+  @Nullable
+  private final GrpcCallMetrics callMetrics;
+  @Nullable
+  private final GrpcAdmission admission;
+  @Nullable
+  private final GrpcOutbox outbox;
+  private ScheduledFuture<?> metricsReporting;
 
-  public GrpcConnection(ManagedChannel channel, ReadableMap settings) {
-    this.channel = channel;
-    this.settings = settings;
+  private final EnumMap<MethodDescriptor.MethodType, ConcurrentHashMap<String, MethodDescriptor<byte[], byte[]>>> descriptors =
+    new EnumMap<>(MethodDescriptor.MethodType.class);
+
+  // Replaced as a whole by setSettings, so that calls on other threads see one consistent version.
+  private volatile CallSettings callSettings;
+  private volatile boolean closed;
+
+  private static class CallSettings {
+    final ReadableMap settings;
+    final CallOptions baseCallOptions;
+    @Nullable
+    final Metadata defaultHeaders;
+    final long requestTimeout;
+    final boolean messageCompression;
+    final boolean singleFlightDefault;
+
+    CallSettings(ReadableMap settings, CallOptions baseCallOptions, @Nullable Metadata defaultHeaders) {
+      this.settings = settings;
+      this.baseCallOptions = baseCallOptions;
+      this.defaultHeaders = defaultHeaders;
+      this.requestTimeout = settings.hasKey("requestTimeout") ? settings.getInt("requestTimeout") : -1;
+      this.messageCompression = settings.hasKey("compression") && settings.getBoolean("compression");
+      this.singleFlightDefault = settings.hasKey("singleFlight") && settings.getBoolean("singleFlight");
+    }
+  }
+
+  public GrpcConnection(ManagedChannel channel, ReadableMap settings, GrpcEventDispatcher eventDispatcher, GrpcExecutor executor, GrpcCompression compression, @Nullable GrpcResponseCache responseCache, @Nullable GrpcAdmission admission, @Nullable GrpcOutbox outbox) {
+    this.eventDispatcher = eventDispatcher;
+    this.executor = executor;
+    this.compression = compression;
+    this.responseCache = responseCache;
+    this.admission = admission;
+    this.outbox = outbox;
+    this.endpointStats = settings.hasKey("addresses") || settings.hasKey("loadBalancingPolicy") ? new GrpcEndpointStats() : null;
+    this.callMetrics = GrpcCallMetrics.create(settings);
+
+    for (MethodDescriptor.MethodType methodType : MethodDescriptor.MethodType.values()) {
+      descriptors.put(methodType, new ConcurrentHashMap<>());
+    }
+
+    setChannel(channel);
+    setSettings(settings);
   }
 
   public ManagedChannel getChannel() {
@@ -19,13 +106,392 @@ public class GrpcConnection {
 
   public void setChannel(ManagedChannel channel) {
     this.channel = channel;
+    this.callChannel = callMetrics != null ? ClientInterceptors.intercept(channel, callMetrics) : channel;
+  }
+
+  /**
+   * The channel to start calls on, including the interceptors installed by the settings.
+   */
+  public Channel getCallChannel() {
+    return callChannel;
   }
 
   public ReadableMap getSettings() {
-    return settings;
+    return callSettings.settings;
+  }
+
+  /**
+   * Whether the settings only differ from the current ones in call settings.
+   */
+  public boolean canUpdateInPlace(ReadableMap settings) {
+    Map<String, Object> current = callSettings.settings.toHashMap();
+    Map<String, Object> next = settings.toHashMap();
+    Set<String> keys = new HashSet<>(current.keySet());
+
+    keys.addAll(next.keySet());
+
+    for (String key : keys) {
+      if (!CALL_SETTINGS.contains(key) && !equal(current.get(key), next.get(key))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  public boolean hasSameSettings(ReadableMap settings, String... keys) {
+    Map<String, Object> current = callSettings.settings.toHashMap();
+    Map<String, Object> next = settings.toHashMap();
+
+    for (String key : keys) {
+      if (!equal(current.get(key), next.get(key))) {
+        return false;
+      }
+    }
+
+    return true;
   }
 
   public void setSettings(ReadableMap settings) {
-    this.settings = settings;
+    compression.checkCompressionName(settings);
+
+    CallOptions callOptions = CallOptions.DEFAULT;
+
+    if (settings.hasKey("compressionName")) {
+      callOptions = callOptions.withCompression(settings.getString("compressionName"));
+    }
+
+    if (endpointStats != null) {
+      callOptions = callOptions.withStreamTracerFactory(endpointStats);
+    }
+
+    Metadata headers = null;
+
+    if (settings.hasKey("headers") && !settings.isNull("headers")) {
+      headers = GrpcMetadataConverter.toMetadata(settings.getMap("headers"));
+    }
+
+    this.callSettings = new CallSettings(settings, callOptions, headers);
+  }
+
+  public GrpcEventDispatcher getEventDispatcher() {
+    return eventDispatcher;
+  }
+
+  public GrpcExecutor getExecutor() {
+    return executor;
+  }
+
+  public GrpcCompression getCompression() {
+    return compression;
+  }
+
+  @Nullable
+  public GrpcResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  @Nullable
+  public GrpcAdmission getAdmission() {
+    return admission;
+  }
+
+  @Nullable
+  public GrpcOutbox getOutbox() {
+    return outbox;
+  }
+
+  @Nullable
+  public GrpcEndpointStats getEndpointStats() {
+    return endpointStats;
+  }
+
+  public GrpcSingleFlight getSingleFlight() {
+    return singleFlight;
+  }
+
+  public boolean isSingleFlightDefault() {
+    return callSettings.singleFlightDefault;
+  }
+
+  public WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+
+    metrics.putMap("events", eventDispatcher.getMetrics());
+    metrics.putMap("executor", executor.getMetrics());
+    metrics.putMap("singleFlight", singleFlight.getMetrics());
+    metrics.putMap("compression", compression.getMetrics());
+
+    if (responseCache != null) {
+      metrics.putMap("cache", responseCache.getMetrics());
+    }
+
+    if (endpointStats != null) {
+      metrics.putMap("endpoints", endpointStats.getMetrics());
+    }
+
+    if (callMetrics != null) {
+      metrics.putMap("methods", callMetrics.getMetrics());
+    }
+
+    if (admission != null) {
+      metrics.putMap("admission", admission.getMetrics());
+    }
+
+    if (outbox != null) {
+      metrics.putMap("outbox", outbox.getMetrics());
+    }
+
+    if (channel instanceof GrpcChannelPool) {
+      metrics.putArray("channels", ((GrpcChannelPool) channel).getMetrics());
+    }
+
+    return metrics;
+  }
+
+  public void startMetricsReporting(ScheduledExecutorService scheduler) {
+    if (callMetrics == null || callMetrics.getInterval() == 0) {
+      return;
+    }
+
+    long interval = callMetrics.getInterval();
+
+    metricsReporting = scheduler.scheduleAtFixedRate(() -> {
+      if (!closed) {
+        eventDispatcher.emitMetrics(getMetrics());
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public void shutdown() {
+    closed = true;
+
+    stopMetricsReporting();
+    closeAdmission();
+    closeOutbox();
+
+    channel.shutdown();
+    eventDispatcher.flush();
+
+    if (!executor.isShared()) {
+      executor.shutdown();
+    }
+  }
+
+  public void shutdownNow() {
+    closed = true;
+
+    stopMetricsReporting();
+    closeAdmission();
+    closeOutbox();
+
+    channel.shutdownNow();
+
+    if (!executor.isShared()) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Releases a connection that new calls no longer use. Calls already started or queued on it may
+   * finish for up to {@code drainTimeout} milliseconds, after which they are cancelled. The waiting
+   * happens on {@code drainExecutor}. The outbox is left open for the next connection.
+   */
+  public void drain(long timeout, Executor drainExecutor) {
+    closed = true;
+
+    stopMetricsReporting();
+
+    drainExecutor.execute(() -> {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+      try {
+        if (admission != null) {
+          admission.awaitQueue(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        closeAdmission();
+        channel.shutdown();
+
+        if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          channel.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        channel.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+
+      eventDispatcher.flush();
+
+      if (!executor.isShared()) {
+        executor.shutdown();
+      }
+    });
+  }
+
+  public static long getDrainTimeout(ReadableMap settings) {
+    return settings.hasKey("drainTimeout") ? (long) settings.getDouble("drainTimeout") : DEFAULT_DRAIN_TIMEOUT;
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private void closeAdmission() {
+    if (admission != null) {
+      admission.close();
+    }
+  }
+
+  private void closeOutbox() {
+    if (outbox != null) {
+      outbox.close();
+    }
+  }
+
+  private void stopMetricsReporting() {
+    if (metricsReporting != null) {
+      metricsReporting.cancel(false);
+    }
+  }
+
+  public void watchConnectivityState() {
+    watchConnectivityState(channel, channel.getState(false));
+  }
+
+  public void connect(long timeout, ScheduledExecutorService scheduler, final Promise promise) {
+    final ManagedChannel channel = this.channel;
+    final AtomicBoolean settled = new AtomicBoolean();
+    ScheduledFuture<?> timer = null;
+
+    if (timeout > 0) {
+      timer = scheduler.schedule(() -> {
+        if (settled.compareAndSet(false, true)) {
+          promise.reject(new Exception("Timed out waiting for the channel to connect"));
+        }
+      }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    awaitReady(channel, channel.getState(true), settled, timer, promise);
+  }
+
+  private void watchConnectivityState(final ManagedChannel channel, ConnectivityState current) {
+    if (current == ConnectivityState.SHUTDOWN) {
+      return;
+    }
+
+    channel.notifyWhenStateChanged(current, () -> {
+      ConnectivityState state = channel.getState(false);
+
+      if (!closed) {
+        eventDispatcher.emitConnectivityState(state);
+
+        if (outbox != null) {
+          outbox.onConnectivityState(state);
+        }
+      }
+
+      watchConnectivityState(channel, state);
+    });
+  }
+
+  /**
+   * Settles the promise once the channel is ready or shut down, and then cancels the timeout.
+   */
+  private static void awaitReady(final ManagedChannel channel, ConnectivityState state, final AtomicBoolean settled, @Nullable final ScheduledFuture<?> timer, final Promise promise) {
+    if (settled.get()) {
+      return;
+    }
+
+    if (state == ConnectivityState.READY || state == ConnectivityState.SHUTDOWN) {
+      if (settled.compareAndSet(false, true)) {
+        if (timer != null) {
+          timer.cancel(false);
+        }
+
+        if (state == ConnectivityState.READY) {
+          promise.resolve(null);
+        } else {
+          promise.reject(new Exception("Channel is shut down"));
+        }
+      }
+
+      return;
+    }
+
+    channel.notifyWhenStateChanged(state, () -> awaitReady(channel, channel.getState(true), settled, timer, promise));
+  }
+
+  public MethodDescriptor<byte[], byte[]> getMethodDescriptor(String path, MethodDescriptor.MethodType methodType) {
+    ConcurrentHashMap<String, MethodDescriptor<byte[], byte[]>> cache = descriptors.get(methodType);
+    MethodDescriptor<byte[], byte[]> descriptor = cache.get(path);
+
+    if (descriptor == null) {
+      descriptor = MethodDescriptor.<byte[], byte[]>newBuilder()
+        .setFullMethodName(normalizePath(path))
+        .setType(methodType)
+        .setRequestMarshaller(GrpcMarshaller.INSTANCE)
+        .setResponseMarshaller(GrpcMarshaller.INSTANCE)
+        .build();
+
+      MethodDescriptor<byte[], byte[]> existing = cache.putIfAbsent(path, descriptor);
+
+      if (existing != null) {
+        descriptor = existing;
+      }
+    }
+
+    return descriptor;
+  }
+
+  /**
+   * Returns the client's default headers overridden by the call's headers.
+   */
+  public Metadata createHeaders(ReadableMap headers) {
+    Metadata metadata = new Metadata();
+    Metadata defaultHeaders = callSettings.defaultHeaders;
+
+    if (defaultHeaders != null) {
+      metadata.merge(defaultHeaders);
+    }
+
+    GrpcMetadataConverter.putAll(metadata, headers);
+
+    return metadata;
+  }
+
+  public Metadata createHeaders(Map<String, String> headers) {
+    Metadata metadata = new Metadata();
+    Metadata defaultHeaders = callSettings.defaultHeaders;
+
+    if (defaultHeaders != null) {
+      metadata.merge(defaultHeaders);
+    }
+
+    GrpcMetadataConverter.putAll(metadata, headers);
+
+    return metadata;
+  }
+
+  public CallOptions getCallOptions() {
+    CallSettings callSettings = this.callSettings;
+
+    if (callSettings.requestTimeout >= 0) {
+      return callSettings.baseCallOptions.withDeadlineAfter(callSettings.requestTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    return callSettings.baseCallOptions;
+  }
+
+  public boolean isMessageCompression() {
+    return callSettings.messageCompression;
+  }
+
+  private static String normalizePath(String path) {
+    if (path.startsWith("/")) {
+      path = path.substring(1);
+    }
+
+    return path;
   }
 }
@@ -0,0 +1,65 @@
+package com.reactnativegrpc;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import io.grpc.Metadata;
+
+final class GrpcDigest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private GrpcDigest() {
+  }
+
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String hash(byte[] data) {
+    return toHex(newDigest().digest(data));
+  }
+
+  /**
+   * Adds a header name and every value the metadata has for it.
+   */
+  static void updateHeader(MessageDigest digest, Metadata headers, String name) {
+    digest.update((byte) 0);
+    digest.update(name.getBytes(UTF_8));
+
+    if (name.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+      Iterable<byte[]> values = headers.getAll(GrpcMetadataConverter.binaryKey(name));
+
+      if (values != null) {
+        for (byte[] value : values) {
+          digest.update((byte) '=');
+          digest.update(value);
+        }
+      }
+    } else {
+      Iterable<String> values = headers.getAll(GrpcMetadataConverter.asciiKey(name));
+
+      if (values != null) {
+        for (String value : values) {
+          digest.update((byte) '=');
+          digest.update(value.getBytes(UTF_8));
+        }
+      }
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+
+    for (int i = 0; i < bytes.length; i++) {
+      hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+      hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+    }
+
+    return new String(hex);
+  }
+}
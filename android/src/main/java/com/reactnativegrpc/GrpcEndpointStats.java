@@ -0,0 +1,121 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Records the latency and outcome of every call attempt per remote address, which shows how the
+ * load balancing policy spreads calls over the backends.
+ */
+public class GrpcEndpointStats extends ClientStreamTracer.Factory {
+  private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  private static class Endpoint {
+    long calls;
+    long failures;
+    long totalLatency;
+    long maxLatency;
+
+    synchronized void record(long latency, boolean ok) {
+      calls++;
+      totalLatency += latency;
+      maxLatency = Math.max(maxLatency, latency);
+
+      if (!ok) {
+        failures++;
+      }
+    }
+
+    synchronized WritableMap getMetrics() {
+      WritableMap metrics = Arguments.createMap();
+
+      metrics.putDouble("calls", calls);
+      metrics.putDouble("failures", failures);
+      metrics.putDouble("averageLatency", calls == 0 ? 0 : toMillis(totalLatency) / calls);
+      metrics.putDouble("maxLatency", toMillis(maxLatency));
+
+      return metrics;
+    }
+  }
+
+  @Override
+  public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+    final long startedAt = System.nanoTime();
+
+    return new ClientStreamTracer() {
+      private volatile String address;
+
+      @Override
+      public void streamCreated(Attributes transportAttrs, Metadata headers) {
+        SocketAddress remoteAddress = transportAttrs.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+
+        if (remoteAddress != null) {
+          address = format(remoteAddress);
+        }
+      }
+
+      @Override
+      public void streamClosed(Status status) {
+        String address = this.address;
+
+        // Attempts that never reached a transport have no endpoint to attribute them to.
+        if (address != null) {
+          getEndpoint(address).record(System.nanoTime() - startedAt, status.isOk());
+        }
+      }
+    };
+  }
+
+  public WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+
+    for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+      metrics.putMap(entry.getKey(), entry.getValue().getMetrics());
+    }
+
+    return metrics;
+  }
+
+  private Endpoint getEndpoint(String address) {
+    Endpoint endpoint = endpoints.get(address);
+
+    if (endpoint == null) {
+      endpoint = new Endpoint();
+
+      Endpoint existing = endpoints.putIfAbsent(address, endpoint);
+
+      if (existing != null) {
+        endpoint = existing;
+      }
+    }
+
+    return endpoint;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private static String format(SocketAddress address) {
+    if (address instanceof InetSocketAddress) {
+      InetSocketAddress inetAddress = (InetSocketAddress) address;
+
+      String host = inetAddress.getAddress() != null ? inetAddress.getAddress().getHostAddress() : inetAddress.getHostName();
+
+      return host + ":" + inetAddress.getPort();
+    }
+
+    return address.toString();
+  }
+}
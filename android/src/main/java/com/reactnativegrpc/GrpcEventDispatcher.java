@@ -0,0 +1,256 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.ConnectivityState;
+import io.grpc.Status;
+
+/**
+ * Delivers call events for a single client to JS, tagged with the client id. When event batching is enabled, events are
+ * buffered and flushed as one {@code grpc-call-batch} event once {@code maxSize} events are pending
+ * or {@code maxDelay} milliseconds have passed since the first pending event.
+ */
+public class GrpcEventDispatcher {
+  static final String CALL_EVENT = "grpc-call";
+  static final String CALL_BATCH_EVENT = "grpc-call-batch";
+  static final String CONNECTIVITY_EVENT = "grpc-connectivity";
+  static final String METRICS_EVENT = "grpc-metrics";
+
+  private static final int DEFAULT_BATCH_SIZE = 64;
+  private static final int DEFAULT_BATCH_DELAY = 16;
+
+  private final GrpcEventSink eventSink;
+  private final ScheduledExecutorService scheduler;
+  private final int clientId;
+  private final boolean batching;
+  private final int maxBatchSize;
+  private final long maxBatchDelay;
+
+  private WritableArray pending;
+  private int pendingCount;
+  private long pendingSince;
+  private ScheduledFuture<?> scheduledFlush;
+
+  private long flushCount;
+  private long flushedEvents;
+  private int largestBatch;
+  private long totalFlushLatency;
+  private long maxFlushLatency;
+
+  public GrpcEventDispatcher(GrpcEventSink eventSink, ScheduledExecutorService scheduler, int clientId, ReadableMap settings) {
+    this.eventSink = eventSink;
+    this.scheduler = scheduler;
+    this.clientId = clientId;
+
+    ReadableMap batchSettings = null;
+
+    if (settings.hasKey("eventBatching") && !settings.isNull("eventBatching")) {
+      batchSettings = settings.getMap("eventBatching");
+    }
+
+    this.batching = batchSettings != null;
+
+    int batchSize = DEFAULT_BATCH_SIZE;
+    int batchDelay = DEFAULT_BATCH_DELAY;
+
+    if (batchSettings != null) {
+      if (batchSettings.hasKey("maxSize")) {
+        batchSize = batchSettings.getInt("maxSize");
+      }
+
+      if (batchSettings.hasKey("maxDelay")) {
+        batchDelay = batchSettings.getInt("maxDelay");
+      }
+
+      if (batchSize < 1) {
+        throw new IllegalArgumentException("eventBatching.maxSize must be at least 1");
+      }
+
+      if (batchDelay < 0) {
+        throw new IllegalArgumentException("eventBatching.maxDelay must not be negative");
+      }
+    }
+
+    this.maxBatchSize = batchSize;
+    this.maxBatchDelay = batchDelay;
+  }
+
+  public void emit(WritableMap event) {
+    event.putInt("clientId", clientId);
+
+    if (!batching) {
+      send(CALL_EVENT, event);
+
+      return;
+    }
+
+    synchronized (this) {
+      if (pending == null) {
+        pending = Arguments.createArray();
+        pendingSince = System.nanoTime();
+      }
+
+      pending.pushMap(event);
+      pendingCount++;
+
+      if (pendingCount >= maxBatchSize) {
+        flush();
+      } else if (scheduledFlush == null) {
+        try {
+          scheduledFlush = scheduler.schedule(this::flush, maxBatchDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+          flush();
+        }
+      }
+    }
+  }
+
+  public synchronized void flush() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+
+    if (pending == null) {
+      return;
+    }
+
+    long latency = System.nanoTime() - pendingSince;
+
+    flushCount++;
+    flushedEvents += pendingCount;
+    largestBatch = Math.max(largestBatch, pendingCount);
+    totalFlushLatency += latency;
+    maxFlushLatency = Math.max(maxFlushLatency, latency);
+
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("clientId", clientId);
+    event.putArray("events", pending);
+
+    pending = null;
+    pendingCount = 0;
+
+    send(CALL_BATCH_EVENT, event);
+  }
+
+  public void emitHeaders(int callId, Map<String, String> headers) {
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("id", callId);
+    event.putString("type", "headers");
+    event.putMap("payload", GrpcMetadataConverter.toWritableMap(headers));
+
+    emit(event);
+  }
+
+  public void emitResponse(int callId, String payload) {
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("id", callId);
+    event.putString("type", "response");
+    event.putString("payload", payload);
+
+    emit(event);
+  }
+
+  public void emitReady(int callId) {
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("id", callId);
+    event.putString("type", "ready");
+
+    emit(event);
+  }
+
+  /**
+   * Reports the length of a call's output file and the number of messages written to it.
+   */
+  public void emitProgress(int callId, long bytes, long messages) {
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("id", callId);
+    event.putString("type", "progress");
+    event.putDouble("bytes", bytes);
+    event.putDouble("messages", messages);
+
+    emit(event);
+  }
+
+  /**
+   * Emits the single terminal event of a call. Trailers are only included if JS asked for them,
+   * and the payload carries the response of calls whose response is deferred until they close.
+   */
+  public void emitClose(int callId, Status status, @Nullable String error, @Nullable Map<String, String> trailers, @Nullable String payload) {
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("id", callId);
+    event.putString("type", "close");
+    event.putInt("code", status.getCode().value());
+
+    if (error != null) {
+      event.putString("error", error);
+    }
+
+    if (trailers != null) {
+      event.putMap("trailers", GrpcMetadataConverter.toWritableMap(trailers));
+    }
+
+    if (payload != null) {
+      event.putString("payload", payload);
+    }
+
+    emit(event);
+  }
+
+  public void emitConnectivityState(ConnectivityState state) {
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("clientId", clientId);
+    event.putString("state", state.name());
+
+    send(CONNECTIVITY_EVENT, event);
+  }
+
+  public void emitMetrics(WritableMap metrics) {
+    WritableMap event = Arguments.createMap();
+
+    event.putInt("clientId", clientId);
+    event.putMap("metrics", metrics);
+
+    send(METRICS_EVENT, event);
+  }
+
+  public synchronized WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+
+    metrics.putBoolean("batching", batching);
+    metrics.putDouble("batches", flushCount);
+    metrics.putDouble("batchedEvents", flushedEvents);
+    metrics.putInt("largestBatch", largestBatch);
+    metrics.putDouble("averageBatchSize", flushCount == 0 ? 0 : (double) flushedEvents / flushCount);
+    metrics.putDouble("averageFlushLatency", flushCount == 0 ? 0 : toMillis(totalFlushLatency) / flushCount);
+    metrics.putDouble("maxFlushLatency", toMillis(maxFlushLatency));
+
+    return metrics;
+  }
+
+  private void send(String eventName, Object params) {
+    eventSink.send(eventName, params);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,9 @@
+package com.reactnativegrpc;
+
+/**
+ * Receives the events of the module. By default they are emitted to JS; benchmarks and load tests
+ * can provide their own sink to drive the module without a JS runtime.
+ */
+public interface GrpcEventSink {
+  void send(String eventName, Object params);
+}
@@ -0,0 +1,154 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor for gRPC call callbacks. Pool based executors have a bounded queue; once it is full, or
+ * after the pool has been shut down, callbacks run on the submitting transport thread instead, which
+ * pushes back on the connection rather than dropping or buffering work.
+ */
+public class GrpcExecutor implements Executor {
+  static final String TYPE_SHARED = "shared";
+  static final String TYPE_DEDICATED = "dedicated";
+  static final String TYPE_DIRECT = "direct";
+
+  static final int DEFAULT_QUEUE_SIZE = 1024;
+
+  private static final AtomicInteger poolCounter = new AtomicInteger();
+
+  private final String type;
+  private final ThreadPoolExecutor pool;
+  private final int queueCapacity;
+  private final AtomicLong saturatedTasks = new AtomicLong();
+
+  private GrpcExecutor(String type, int poolSize, int queueSize) {
+    this.type = type;
+    this.queueCapacity = queueSize;
+
+    if (TYPE_DIRECT.equals(type)) {
+      this.pool = null;
+
+      return;
+    }
+
+    final String namePrefix = "grpc-" + type + "-" + poolCounter.incrementAndGet() + "-";
+    final AtomicInteger threadCounter = new AtomicInteger();
+
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + threadCounter.incrementAndGet());
+
+      thread.setDaemon(true);
+
+      return thread;
+    };
+
+    RejectedExecutionHandler saturationHandler = (runnable, executor) -> {
+      saturatedTasks.incrementAndGet();
+
+      runnable.run();
+    };
+
+    this.pool = new ThreadPoolExecutor(
+      poolSize,
+      poolSize,
+      60L,
+      TimeUnit.SECONDS,
+      queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new LinkedBlockingQueue<>(),
+      threadFactory,
+      saturationHandler
+    );
+
+    this.pool.allowCoreThreadTimeOut(true);
+  }
+
+  static GrpcExecutor createShared() {
+    return new GrpcExecutor(TYPE_SHARED, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE);
+  }
+
+  static GrpcExecutor create(ReadableMap settings, GrpcExecutor shared) {
+    if (!settings.hasKey("executor") || settings.isNull("executor")) {
+      return shared;
+    }
+
+    ReadableMap options = settings.getMap("executor");
+    String type = options.hasKey("type") ? options.getString("type") : TYPE_SHARED;
+
+    if (TYPE_SHARED.equals(type)) {
+      return shared;
+    }
+
+    if (TYPE_DIRECT.equals(type)) {
+      return new GrpcExecutor(TYPE_DIRECT, 0, 0);
+    }
+
+    if (!TYPE_DEDICATED.equals(type)) {
+      throw new IllegalArgumentException("Unknown executor type: " + type);
+    }
+
+    int poolSize = options.hasKey("poolSize") ? options.getInt("poolSize") : 1;
+    int queueSize = options.hasKey("queueSize") ? options.getInt("queueSize") : DEFAULT_QUEUE_SIZE;
+
+    if (poolSize < 1) {
+      throw new IllegalArgumentException("executor.poolSize must be at least 1");
+    }
+
+    if (queueSize < 0) {
+      throw new IllegalArgumentException("executor.queueSize must not be negative");
+    }
+
+    return new GrpcExecutor(TYPE_DEDICATED, poolSize, queueSize);
+  }
+
+  public boolean isDirect() {
+    return pool == null;
+  }
+
+  public boolean isShared() {
+    return TYPE_SHARED.equals(type);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (pool == null) {
+      command.run();
+    } else {
+      pool.execute(command);
+    }
+  }
+
+  public void shutdown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  public WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+
+    metrics.putString("type", type);
+
+    if (pool != null) {
+      metrics.putInt("poolSize", pool.getMaximumPoolSize());
+      metrics.putInt("activeThreads", pool.getActiveCount());
+      metrics.putInt("queueDepth", pool.getQueue().size());
+      metrics.putInt("queueCapacity", queueCapacity);
+      metrics.putDouble("completedTasks", pool.getCompletedTaskCount());
+    }
+
+    metrics.putDouble("saturatedTasks", saturatedTasks.get());
+
+    return metrics;
+  }
+}
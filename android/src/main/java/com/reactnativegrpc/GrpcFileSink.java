@@ -0,0 +1,296 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import io.grpc.ClientCall;
+import io.grpc.KnownLength;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Writes the response messages of a call straight to a file instead of sending them to JS. The
+ * file sink is the response marshaller of the call, so each message is copied from the transport
+ * buffers to the file without being materialized as an array. JS only receives throttled
+ * {@code progress} events and the final status.
+ */
+public class GrpcFileSink implements MethodDescriptor.Marshaller<byte[]> {
+  private static final byte[] EMPTY = new byte[0];
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long DEFAULT_PROGRESS_INTERVAL = 100;
+
+  private final File file;
+  private final boolean delimited;
+  private final long progressInterval;
+  private final FileOutputStream fileStream;
+  private final OutputStream out;
+
+  // Only touched by parse and the listener, which gRPC runs serially on the call executor.
+  private long bytes;
+  private long messages;
+  private IOException failure;
+
+  private GrpcFileSink(File file, boolean delimited, long progressInterval, long offset) throws IOException {
+    this.file = file;
+    this.delimited = delimited;
+    this.progressInterval = progressInterval;
+    this.bytes = offset;
+    this.fileStream = new FileOutputStream(file, offset > 0);
+    this.out = new BufferedOutputStream(fileStream, BUFFER_SIZE);
+  }
+
+  /**
+   * Opens the file of the {@code output} options. With an {@code offset} the file is truncated to
+   * that length and appended to, which resumes a download that failed partway.
+   */
+  static GrpcFileSink open(ReadableMap options) throws IOException {
+    File file = new File(options.getString("path"));
+    String format = options.hasKey("format") ? options.getString("format") : "raw";
+    long offset = options.hasKey("offset") ? (long) options.getDouble("offset") : 0;
+    long progressInterval = options.hasKey("progressInterval") ? (long) options.getDouble("progressInterval") : DEFAULT_PROGRESS_INTERVAL;
+
+    if (!"raw".equals(format) && !"delimited".equals(format)) {
+      throw new IllegalArgumentException("Unsupported output format: " + format);
+    }
+
+    if (offset < 0 || offset > file.length()) {
+      throw new IllegalArgumentException("output.offset must be between 0 and the file size");
+    }
+
+    if (progressInterval < 0) {
+      throw new IllegalArgumentException("output.progressInterval must not be negative");
+    }
+
+    File parent = file.getParentFile();
+
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Could not create " + parent);
+    }
+
+    if (offset > 0) {
+      truncate(file, offset);
+    }
+
+    return new GrpcFileSink(file, "delimited".equals(format), progressInterval, offset);
+  }
+
+  /**
+   * The descriptor of the call with this sink as its response marshaller.
+   */
+  MethodDescriptor<byte[], byte[]> bind(MethodDescriptor<byte[], byte[]> method) {
+    return method.toBuilder().setResponseMarshaller(this).build();
+  }
+
+  ClientCall.Listener<byte[]> listener(GrpcCall call, Map<Integer, GrpcCall> registry) {
+    return new Listener(call, registry);
+  }
+
+  @Override
+  public InputStream stream(byte[] value) {
+    return GrpcMarshaller.INSTANCE.stream(value);
+  }
+
+  /**
+   * Copies a message to the file. A write failure is kept for the listener, which cancels the call.
+   */
+  @Override
+  public byte[] parse(InputStream stream) {
+    if (failure != null) {
+      return EMPTY;
+    }
+
+    try {
+      bytes += delimited ? writeDelimited(stream) : ByteStreams.copy(stream, out);
+      messages++;
+    } catch (IOException e) {
+      failure = e;
+    }
+
+    return EMPTY;
+  }
+
+  private long writeDelimited(InputStream stream) throws IOException {
+    if (stream instanceof KnownLength) {
+      int length = stream.available();
+
+      return writeLength(length) + ByteStreams.copy(stream, out);
+    }
+
+    // Decompressed messages don't know their length up front.
+    byte[] data = ByteStreams.toByteArray(stream);
+
+    out.write(data);
+
+    return writeLength(data.length) + data.length;
+  }
+
+  /**
+   * Writes a protobuf varint length, the framing read by {@code parseDelimitedFrom}.
+   */
+  private int writeLength(int length) throws IOException {
+    int size = 1;
+
+    while ((length & ~0x7F) != 0) {
+      out.write((length & 0x7F) | 0x80);
+      length >>>= 7;
+      size++;
+    }
+
+    out.write(length);
+
+    return size;
+  }
+
+  /**
+   * Closes the file of a call that could not be started. A file created for the call is deleted,
+   * one being resumed keeps its length.
+   */
+  void discard() {
+    try {
+      out.close();
+    } catch (IOException e) {
+      // Nothing was written yet.
+    }
+
+    if (bytes == 0) {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /**
+   * Flushes and closes the file. Unless the call succeeded, the file is cut back to the last whole
+   * message so that its length is a valid offset to resume from.
+   */
+  private Status finish(Status status) {
+    long committed = bytes;
+
+    if (failure == null) {
+      try {
+        out.flush();
+
+        if (status.isOk()) {
+          fileStream.getFD().sync();
+        }
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+
+    try {
+      out.close();
+    } catch (IOException e) {
+      // The buffered bytes were already lost with the flush failure.
+    }
+
+    if (failure != null) {
+      status = Status.INTERNAL.withDescription("Failed to write " + file).withCause(failure);
+    }
+
+    if (!status.isOk()) {
+      if (file.length() > committed) {
+        try {
+          truncate(file, committed);
+        } catch (IOException e) {
+          // The length reported with the close event is still a valid offset.
+        }
+      }
+
+      // Buffered bytes lost to a failed flush aren't in the file.
+      bytes = Math.min(committed, file.length());
+    }
+
+    return status;
+  }
+
+  private static void truncate(File file, long length) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+    try {
+      randomAccessFile.setLength(length);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  private class Listener extends ClientCall.Listener<byte[]> {
+    private final GrpcCall call;
+    private final Map<Integer, GrpcCall> registry;
+    private final GrpcEventDispatcher eventDispatcher;
+
+    private long progressAt;
+
+    Listener(GrpcCall call, Map<Integer, GrpcCall> registry) {
+      this.call = call;
+      this.registry = registry;
+      this.eventDispatcher = call.getEventDispatcher();
+      this.progressAt = System.nanoTime();
+    }
+
+    @Override
+    public void onHeaders(Metadata headers) {
+      if (call.receivesHeaders()) {
+        Map<String, String> payload = GrpcMetadataConverter.toMap(headers);
+
+        for (int id : call.getTargets()) {
+          eventDispatcher.emitHeaders(id, payload);
+        }
+      }
+    }
+
+    @Override
+    public void onMessage(byte[] data) {
+      if (failure != null) {
+        call.cancel("Failed to write " + file, failure);
+
+        return;
+      }
+
+      long now = System.nanoTime();
+
+      if (now - progressAt >= progressInterval * 1_000_000) {
+        progressAt = now;
+
+        emitProgress();
+      }
+
+      // Asking for one message at a time lets the disk pace the download.
+      call.request(1);
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+      for (int id : call.getTargets()) {
+        registry.remove(id, call);
+      }
+
+      status = finish(status);
+
+      // Sent even on failure, so that JS knows the offset to resume from.
+      emitProgress();
+
+      String error = status.isOk() ? null : status.asException(trailers).getLocalizedMessage();
+      Map<String, String> trailersPayload = call.receivesTrailers() ? GrpcMetadataConverter.toMap(trailers) : null;
+
+      for (int id : call.getTargets()) {
+        eventDispatcher.emitClose(id, status, error, trailersPayload, null);
+      }
+    }
+
+    private void emitProgress() {
+      for (int id : call.getTargets()) {
+        eventDispatcher.emitProgress(id, bytes, messages);
+      }
+    }
+  }
+}
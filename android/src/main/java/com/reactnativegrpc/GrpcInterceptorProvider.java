@@ -0,0 +1,15 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.List;
+
+import io.grpc.ClientInterceptor;
+
+/**
+ * Supplies native interceptors for each client's channel, e.g. to attach and refresh auth tokens
+ * without a JS round trip per call. Pass an implementation to {@link GrpcPackage}.
+ */
+public interface GrpcInterceptorProvider {
+  List<ClientInterceptor> getInterceptors(ReadableMap settings);
+}
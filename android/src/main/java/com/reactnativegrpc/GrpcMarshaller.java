@@ -5,23 +5,58 @@ import com.google.common.io.ByteStreams;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
 import io.grpc.MethodDescriptor;
+import io.grpc.Status;
 
 public class GrpcMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+  public static final GrpcMarshaller INSTANCE = new GrpcMarshaller();
+
   @Override
   public InputStream stream(byte[] value) {
-    return new ByteArrayInputStream(value);
+    return new ByteArrayDrainable(value);
   }
 
   @Override
   public byte[] parse(InputStream stream) {
     try {
+      if (stream instanceof KnownLength) {
+        byte[] data = new byte[stream.available()];
+
+        ByteStreams.readFully(stream, data);
+
+        return data;
+      }
+
       return ByteStreams.toByteArray(stream);
     } catch (IOException e) {
-      e.printStackTrace();
+      throw Status.INTERNAL
+        .withDescription("Failed to read message")
+        .withCause(e)
+        .asRuntimeException();
+    }
+  }
+
+  /**
+   * Lets gRPC size the outbound frame without buffering and write the array straight to the transport.
+   */
+  private static class ByteArrayDrainable extends ByteArrayInputStream implements Drainable, KnownLength {
+    ByteArrayDrainable(byte[] buf) {
+      super(buf);
+    }
+
+    @Override
+    public synchronized int drainTo(OutputStream target) throws IOException {
+      int length = count - pos;
+
+      target.write(buf, pos, length);
+
+      pos = count;
 
-      return null;
+      return length;
     }
   }
 }
@@ -0,0 +1,156 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.grpc.Metadata;
+
+final class GrpcMetadataConverter {
+  private static final int MAX_CACHED_KEYS = 256;
+
+  private static final ConcurrentHashMap<String, Metadata.Key<String>> asciiKeys = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, Metadata.Key<byte[]>> binaryKeys = new ConcurrentHashMap<>();
+
+  private GrpcMetadataConverter() {
+  }
+
+  /**
+   * Converts JS headers to metadata. Values of {@code -bin} headers are Base64 encoded bytes.
+   */
+  static Metadata toMetadata(ReadableMap headers) {
+    Metadata metadata = new Metadata();
+
+    putAll(metadata, headers);
+
+    return metadata;
+  }
+
+  /**
+   * Adds the headers to the metadata, replacing any values it already has for the same keys.
+   */
+  static void putAll(Metadata metadata, ReadableMap headers) {
+    ReadableMapKeySetIterator iterator = headers.keySetIterator();
+
+    while (iterator.hasNextKey()) {
+      String name = iterator.nextKey();
+
+      if (!headers.isNull(name)) {
+        put(metadata, name, getString(headers, name));
+      }
+    }
+  }
+
+  static void putAll(Metadata metadata, Map<String, String> headers) {
+    for (Map.Entry<String, String> entry : headers.entrySet()) {
+      put(metadata, entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Copies JS headers to a map of strings, e.g. to keep them after the call returns.
+   */
+  static Map<String, String> toStringMap(ReadableMap headers) {
+    Map<String, String> map = new LinkedHashMap<>();
+    ReadableMapKeySetIterator iterator = headers.keySetIterator();
+
+    while (iterator.hasNextKey()) {
+      String name = iterator.nextKey();
+
+      if (!headers.isNull(name)) {
+        map.put(name, getString(headers, name));
+      }
+    }
+
+    return map;
+  }
+
+  static Map<String, String> toMap(Metadata metadata) {
+    Map<String, String> map = new LinkedHashMap<>();
+
+    for (String key : metadata.keys()) {
+      if (key.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+        byte[] data = metadata.get(binaryKey(key));
+
+        map.put(key, GrpcPayloadCodec.encode(data));
+      } else if (!key.startsWith(":")) {
+        String data = metadata.get(asciiKey(key));
+
+        map.put(key, data);
+      }
+    }
+
+    return map;
+  }
+
+  static WritableMap toWritableMap(Map<String, String> map) {
+    WritableMap writableMap = Arguments.createMap();
+
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writableMap.putString(entry.getKey(), entry.getValue());
+    }
+
+    return writableMap;
+  }
+
+  private static void put(Metadata metadata, String name, String value) {
+    if (name.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+      Metadata.Key<byte[]> key = binaryKey(name);
+
+      metadata.discardAll(key);
+      metadata.put(key, GrpcPayloadCodec.decode(value));
+    } else {
+      Metadata.Key<String> key = asciiKey(name);
+
+      metadata.discardAll(key);
+      metadata.put(key, value);
+    }
+  }
+
+  private static String getString(ReadableMap headers, String name) {
+    switch (headers.getType(name)) {
+      case String:
+        return headers.getString(name);
+      case Number:
+        return String.valueOf(headers.getDouble(name));
+      case Boolean:
+        return String.valueOf(headers.getBoolean(name));
+      default:
+        throw new IllegalArgumentException("Header " + name + " must be a string");
+    }
+  }
+
+  static Metadata.Key<String> asciiKey(String name) {
+    Metadata.Key<String> key = asciiKeys.get(name);
+
+    if (key == null) {
+      key = Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER);
+
+      // Names are normally a fixed set; stop caching if an app generates them.
+      if (asciiKeys.size() < MAX_CACHED_KEYS) {
+        asciiKeys.put(name, key);
+      }
+    }
+
+    return key;
+  }
+
+  static Metadata.Key<byte[]> binaryKey(String name) {
+    Metadata.Key<byte[]> key = binaryKeys.get(name);
+
+    if (key == null) {
+      key = Metadata.Key.of(name, Metadata.BINARY_BYTE_MARSHALLER);
+
+      if (binaryKeys.size() < MAX_CACHED_KEYS) {
+        binaryKeys.put(name, key);
+      }
+    }
+
+    return key;
+  }
+}
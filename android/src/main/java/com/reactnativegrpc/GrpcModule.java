@@ -1,40 +1,62 @@
 package com.reactnativegrpc;
 
-import android.util.Base64;
-
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
-import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
-import java.util.HashMap;
+import java.io.File;
 import java.util.Map;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledExecutorService;
 
 import io.grpc.CallOptions;
+import io.grpc.Channel;
 import io.grpc.ClientCall;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 
 public class GrpcModule extends ReactContextBaseJavaModule {
   private final ReactApplicationContext context;
-  private final HashMap<Integer, ClientCall> callsMap = new HashMap<>();
-  private final HashMap<Integer, GrpcConnection> connections = new HashMap<>();
-  private final Executor executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  private final ConcurrentHashMap<Integer, GrpcCall> callsMap = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, GrpcConnection> connections = new ConcurrentHashMap<>();
+  private final GrpcExecutor sharedExecutor = GrpcExecutor.createShared();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+  private final ExecutorService drainExecutor = Executors.newCachedThreadPool();
+
+  private final GrpcChannelConfigurator channelConfigurator;
+  private final GrpcInterceptorProvider interceptorProvider;
+  private final GrpcEventSink eventSink;
 
   public GrpcModule(ReactApplicationContext context) {
+    this(context, null);
+  }
+
+  public GrpcModule(ReactApplicationContext context, GrpcChannelConfigurator channelConfigurator) {
+    this(context, channelConfigurator, null);
+  }
+
+  public GrpcModule(ReactApplicationContext context, GrpcChannelConfigurator channelConfigurator, GrpcInterceptorProvider interceptorProvider) {
+    this(context, channelConfigurator, interceptorProvider, (eventName, params) ->
+      context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, params));
+  }
+
+  public GrpcModule(ReactApplicationContext context, GrpcChannelConfigurator channelConfigurator, GrpcInterceptorProvider interceptorProvider, GrpcEventSink eventSink) {
     this.context = context;
+    this.channelConfigurator = channelConfigurator;
+    this.interceptorProvider = interceptorProvider;
+    this.eventSink = eventSink;
   }
 
   @NonNull
@@ -43,320 +65,603 @@ public class GrpcModule extends ReactContextBaseJavaModule {
     return "Grpc";
   }
 
+  @Override
+  public void invalidate() {
+    super.invalidate();
 
-  @ReactMethod
-  public void setGrpcSettings(int id, ReadableMap settings) {
-    this.destroyClient(id);
+    for (GrpcCall call : callsMap.values()) {
+      call.cancel("Cancelled", new Exception("Module invalidated"));
+    }
+
+    callsMap.clear();
 
-    ManagedChannel channel = this.createManagedChannel(id, settings);
+    for (GrpcConnection connection : connections.values()) {
+      connection.shutdownNow();
+    }
+
+    connections.clear();
 
-    this.connections.put(id, new GrpcConnection(channel, settings));
+    sharedExecutor.shutdown();
+    scheduler.shutdown();
+    diskExecutor.shutdown();
+    drainExecutor.shutdownNow();
   }
 
+  /**
+   * Creates the client, or updates it. Call settings are applied in place. Other changes create a
+   * new channel, which new calls use right away, while the previous one drains in the background.
+   * Invalid settings reject the promise and leave the client as it was.
+   */
   @ReactMethod
-  public void unaryCall(int callId, Integer id, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
-    ClientCall call;
-
+  public void setGrpcSettings(int id, ReadableMap settings, final Promise promise) {
     try {
-      call = this.startGrpcCall(callId, id, path, MethodDescriptor.MethodType.UNARY, headers);
-    } catch (Exception e) {
-      promise.reject(e);
+      GrpcConnection current = this.connections.get(id);
+      GrpcConnection connection;
 
-      return;
-    }
+      if (current != null && current.canUpdateInPlace(settings)) {
+        connection = current;
+        connection.setSettings(settings);
+      } else {
+        connection = this.createConnection(id, settings, current);
 
-    byte[] data = Base64.decode(obj.getString("data"), Base64.NO_WRAP);
+        this.connections.put(id, connection);
 
-    call.sendMessage(data);
-    call.request(1);
-    call.halfClose();
+        connection.watchConnectivityState();
+        connection.startMetricsReporting(scheduler);
 
-    callsMap.put(id, call);
+        if (current != null) {
+          GrpcOutbox previousOutbox = current.getOutbox();
 
-    promise.resolve(null);
-  }
+          if (previousOutbox != null && previousOutbox != connection.getOutbox()) {
+            previousOutbox.close();
+          }
 
-  @ReactMethod
-  public void serverStreamingCall(int id, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
-    ClientCall call;
+          current.drain(GrpcConnection.getDrainTimeout(settings), drainExecutor);
+        }
 
-    try {
-      call = this.startGrpcCall(id, clientId, path, MethodDescriptor.MethodType.SERVER_STREAMING, headers);
+        // After the drain, so that the previous channel no longer reports its state to the outbox.
+        if (connection.getOutbox() != null) {
+          connection.getOutbox().attach(connection);
+        }
+      }
+
+      if (settings.hasKey("eagerConnect") && settings.getBoolean("eagerConnect")) {
+        connection.getChannel().getState(true);
+      }
     } catch (Exception e) {
       promise.reject(e);
 
       return;
     }
 
-    byte[] data = Base64.decode(obj.getString("data"), Base64.NO_WRAP);
+    promise.resolve(null);
+  }
 
-    call.sendMessage(data);
-    call.request(1);
-    call.halfClose();
+  /**
+   * Creates the connection for new settings. If the settings are invalid, whatever was created is
+   * released and the previous connection stays in use.
+   */
+  private GrpcConnection createConnection(int id, ReadableMap settings, @Nullable GrpcConnection previous) {
+    GrpcEventDispatcher eventDispatcher = new GrpcEventDispatcher(eventSink, scheduler, id, settings);
+    GrpcExecutor executor = GrpcExecutor.create(settings, sharedExecutor);
+    ManagedChannel channel = null;
+    GrpcAdmission admission = null;
+    GrpcOutbox outbox = null;
 
-    callsMap.put(id, call);
+    try {
+      GrpcCompression compression = new GrpcCompression(settings);
 
-    promise.resolve(null);
-  }
+      channel = GrpcChannelPool.create(settings, () ->
+        GrpcChannelFactory.create(settings, executor, compression, channelConfigurator, interceptorProvider));
 
-  @ReactMethod
-  public void clientStreamingCall(int id, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
-    ClientCall call = callsMap.get(id);
+      GrpcResponseCache responseCache;
 
-    if (call == null) {
-      try {
-        call = this.startGrpcCall(id, clientId, path, MethodDescriptor.MethodType.CLIENT_STREAMING, headers);
-      } catch (Exception e) {
-        promise.reject(e);
+      // Keeps the cached responses, and a single owner of the cache files, across channel changes.
+      if (previous != null && previous.getResponseCache() != null && previous.hasSameSettings(settings, "host", "cache")) {
+        responseCache = previous.getResponseCache();
+      } else {
+        responseCache = GrpcResponseCache.create(settings, context.getCacheDir(), diskExecutor);
+      }
 
-        return;
+      admission = GrpcAdmission.create(settings, scheduler);
+      outbox = this.createOutbox(id, settings, previous);
+
+      return new GrpcConnection(channel, settings, eventDispatcher, executor, compression, responseCache, admission, outbox);
+    } catch (RuntimeException e) {
+      if (outbox != null && (previous == null || outbox != previous.getOutbox())) {
+        outbox.close();
+      }
+
+      if (admission != null) {
+        admission.close();
+      }
+
+      if (channel != null) {
+        channel.shutdownNow();
+      }
+
+      if (!executor.isShared()) {
+        executor.shutdown();
       }
 
-      callsMap.put(id, call);
+      throw e;
     }
+  }
 
-    byte[] data = Base64.decode(obj.getString("data"), Base64.NO_WRAP);
+  /**
+   * Keeps the outbox of the previous connection if it uses the same log, so that calls being
+   * replayed aren't sent twice. Replays always run on the client's current connection.
+   */
+  @Nullable
+  private GrpcOutbox createOutbox(int id, ReadableMap settings, @Nullable GrpcConnection previous) {
+    File file = GrpcOutbox.getFile(settings, context.getFilesDir());
+    GrpcOutbox outbox = previous != null ? previous.getOutbox() : null;
 
-    call.sendMessage(data);
-    call.request(1);
+    if (outbox != null && outbox.getFile().equals(file)) {
+      outbox.configure(settings.getMap("outbox"));
 
-    promise.resolve(null);
+      return outbox;
+    }
+
+    if (file != null) {
+      for (Map.Entry<Integer, GrpcConnection> entry : this.connections.entrySet()) {
+        GrpcOutbox other = entry.getValue().getOutbox();
+
+        if (entry.getKey() != id && other != null && other.getFile().equals(file)) {
+          throw new IllegalArgumentException("Another client uses the same outbox, set outbox.name to tell them apart");
+        }
+      }
+    }
+
+    // The previous outbox is closed once the new connection replaces it.
+    return GrpcOutbox.create(settings, context.getFilesDir(), diskExecutor, scheduler, (entry, observer) -> {
+      GrpcConnection connection = this.connections.get(id);
+
+      if (connection == null) {
+        throw new IllegalStateException("Channel not created");
+      }
+
+      this.startRequestCall(connection, null, entry.path, MethodDescriptor.MethodType.UNARY, connection.createHeaders(entry.headers), null, entry.data, 1, false, observer);
+    });
   }
 
   @ReactMethod
-  public void finishClientStreaming(int id, final Promise promise) {
-    if (callsMap.containsKey(id)) {
-      ClientCall call = callsMap.get(id);
+  public void connect(int id, int timeout, final Promise promise) {
+    GrpcConnection connection = this.connections.get(id);
 
-      call.halfClose();
+    if (connection == null) {
+      promise.reject(new Exception("Channel not created"));
 
-      promise.resolve(true);
-    } else {
-      promise.resolve(false);
+      return;
     }
+
+    connection.connect(timeout, scheduler, promise);
   }
 
   @ReactMethod
-  public void cancelGrpcCall(int id, final Promise promise) {
-    if (callsMap.containsKey(id)) {
-      ClientCall call = callsMap.get(id);
-      call.cancel("Cancelled", new Exception("Cancelled by app"));
+  public void getMetrics(int id, final Promise promise) {
+    GrpcConnection connection = this.connections.get(id);
 
-      promise.resolve(true);
-    } else {
-      promise.resolve(false);
+    if (connection == null) {
+      promise.reject(new Exception("Channel not created"));
+
+      return;
     }
+
+    promise.resolve(connection.getMetrics());
   }
 
-  private ClientCall startGrpcCall(int callId, int clientId, String path, MethodDescriptor.MethodType methodType, ReadableMap headers) throws Exception {
-    if (!this.connections.containsKey(clientId)) {
-      throw new Exception("Channel not created");
-    }
+  @ReactMethod
+  public void unaryCall(int callId, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
+    try {
+      byte[] data = GrpcPayloadCodec.decode(obj.getString("data"));
 
-    GrpcConnection connection = this.connections.get(clientId);
-    ReadableMap settings = connection.getSettings();
-    ManagedChannel channel = connection.getChannel();
+      GrpcConnection connection = this.getConnection(clientId);
+      ReadableMap options = getRequestOptions(obj);
+
+      if (getOption(options, "outbox", false)) {
+        GrpcOutbox outbox = connection.getOutbox();
+
+        if (outbox == null) {
+          throw new Exception("The outbox option needs the outbox setting");
+        }
 
-    path = normalizePath(path);
+        outbox.enqueue(callId, path, GrpcMetadataConverter.toStringMap(headers), data, getOption(options, "receiveHeaders", true), getOption(options, "receiveTrailers", true));
 
-    final Metadata headersMetadata = new Metadata();
+        promise.resolve(null);
 
-    for (Map.Entry<String, Object> headerEntry : headers.toHashMap().entrySet()) {
-      headersMetadata.put(Metadata.Key.of(headerEntry.getKey(), Metadata.ASCII_STRING_MARSHALLER), headerEntry.getValue().toString());
+        return;
+      }
+
+      GrpcResponseCache cache = getOption(options, "cache", false) ? connection.getResponseCache() : null;
+
+      if (cache != null) {
+        String key = cache.key(path, data, connection.createHeaders(headers));
+
+        // Reading the entry from disk finishes the call on the disk executor.
+        cache.get(key, (entry) -> {
+          try {
+            if (entry != null) {
+              this.serveCachedResponse(connection, callId, path, data, headers, options, key, entry);
+            } else {
+              this.startUnaryCall(connection, callId, path, data, headers, options, cache.recorder(key, false));
+            }
+          } catch (Exception e) {
+            promise.reject(e);
+
+            return;
+          }
+
+          promise.resolve(null);
+        });
+
+        return;
+      }
+
+      this.startUnaryCall(connection, callId, path, data, headers, options, null);
+    } catch (Exception e) {
+      promise.reject(e);
+
+      return;
     }
 
-    MethodDescriptor.Marshaller<byte[]> marshaller = new GrpcMarshaller();
+    promise.resolve(null);
+  }
 
-    MethodDescriptor descriptor = MethodDescriptor.<byte[], byte[]>newBuilder()
-      .setFullMethodName(path)
-      .setType(methodType)
-      .setRequestMarshaller(marshaller)
-      .setResponseMarshaller(marshaller)
-      .build();
+  private void startUnaryCall(GrpcConnection connection, int callId, String path, byte[] data, ReadableMap headers, @Nullable ReadableMap options, @Nullable GrpcCallListener.Observer observer) {
+    Metadata headersMetadata = connection.createHeaders(headers);
 
-    CallOptions callOptions = CallOptions.DEFAULT;
+    if (getOption(options, "singleFlight", connection.isSingleFlightDefault())) {
+      GrpcSingleFlight singleFlight = connection.getSingleFlight();
+      String key = singleFlight.key(path, data, headersMetadata, getOption(options, "receiveHeaders", true), getOption(options, "receiveTrailers", true));
 
-    if (settings.hasKey("requestTimeout")) {
-      int callTimeout = settings.getInt("requestTimeout");
+      if (singleFlight.join(key, callId, callsMap) != null) {
+        return;
+      }
+
+      GrpcSingleFlight.Flight flight = singleFlight.newFlight(key, observer);
 
-      callOptions = callOptions.withDeadlineAfter(callTimeout, TimeUnit.MILLISECONDS);
+      flight.start(this.startRequestCall(connection, callId, path, MethodDescriptor.MethodType.UNARY, headersMetadata, options, data, 1, false, flight));
+    } else {
+      this.startRequestCall(connection, callId, path, MethodDescriptor.MethodType.UNARY, headersMetadata, options, data, 1, false, observer);
     }
+  }
+
+  private void serveCachedResponse(GrpcConnection connection, int callId, String path, byte[] data, ReadableMap headers, @Nullable ReadableMap options, String key, GrpcResponseCache.Entry entry) {
+    GrpcResponseCache cache = connection.getResponseCache();
+    GrpcEventDispatcher eventDispatcher = connection.getEventDispatcher();
 
-    if (settings.hasKey("compressionName")) {
-      callOptions = callOptions.withCompression(settings.getString("compressionName"));
+    if (getOption(options, "receiveHeaders", true)) {
+      eventDispatcher.emitHeaders(callId, entry.headers);
     }
 
-    ClientCall call = channel.newCall(descriptor, callOptions);
+    eventDispatcher.emitClose(callId, Status.OK, null, getOption(options, "receiveTrailers", true) ? entry.trailers : null, entry.response);
 
-    call.start(new ClientCall.Listener() {
-      @Override
-      public void onHeaders(Metadata headers) {
-        super.onHeaders(headers);
+    if (!cache.isStale(entry) || !cache.beginRevalidation(key)) {
+      return;
+    }
 
-        WritableMap event = Arguments.createMap();
-        WritableMap payload = Arguments.createMap();
+    try {
+      this.startRequestCall(connection, null, path, MethodDescriptor.MethodType.UNARY, connection.createHeaders(headers), null, data, 1, false, cache.recorder(key, true));
+    } catch (RuntimeException e) {
+      cache.endRevalidation(key);
+    }
+  }
 
-        for (String key : headers.keys()) {
-          if (key.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
-            byte[] data = headers.get(Metadata.Key.of(key, Metadata.BINARY_BYTE_MARSHALLER));
+  @ReactMethod
+  public void serverStreamingCall(int id, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
+    try {
+      byte[] data = GrpcPayloadCodec.decode(obj.getString("data"));
+      int prefetch = getPrefetch(obj);
 
-            payload.putString(key, new String(Base64.encode(data, Base64.NO_WRAP)));
-          } else if (!key.startsWith(":")) {
-            String data = headers.get(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER));
+      GrpcConnection connection = this.getConnection(clientId);
 
-            payload.putString(key, data);
-          }
-        }
+      this.startRequestCall(connection, id, path, MethodDescriptor.MethodType.SERVER_STREAMING, connection.createHeaders(headers), getRequestOptions(obj), data, prefetch == 0 ? 1 : prefetch, prefetch == 0, null);
+    } catch (Exception e) {
+      promise.reject(e);
+
+      return;
+    }
+
+    promise.resolve(null);
+  }
+
+  /**
+   * Starts a unary or server streaming call whose responses are written to the file described by
+   * {@code obj.output} rather than sent to JS.
+   */
+  @ReactMethod
+  public void downloadCall(int id, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
+    try {
+      byte[] data = GrpcPayloadCodec.decode(obj.getString("data"));
 
-        event.putInt("id", callId);
-        event.putString("type", "headers");
-        event.putMap("payload", payload);
+      GrpcConnection connection = this.getConnection(clientId);
+      ReadableMap options = getRequestOptions(obj);
+      int priority = GrpcAdmission.parsePriority(options, GrpcAdmission.PRIORITY_NORMAL);
+      Metadata headersMetadata = connection.createHeaders(headers);
+      CallOptions callOptions = connection.getCallOptions();
+      GrpcFileSink sink = GrpcFileSink.open(obj.getMap("output"));
+      GrpcCall call;
 
-        emitEvent("grpc-call", event);
+      try {
+        // Unary methods are called as server streaming ones, which is the same on the wire.
+        MethodDescriptor<byte[], byte[]> method = sink.bind(connection.getMethodDescriptor(path, MethodDescriptor.MethodType.SERVER_STREAMING));
+
+        call = this.createGrpcCall(connection, id, method, callOptions, options);
+      } catch (RuntimeException e) {
+        sink.discard();
+
+        throw e;
       }
 
-      @Override
-      public void onMessage(Object messageObj) {
-        super.onMessage(messageObj);
+      // From here on the listener closes the file, also when the call is rejected.
+      this.admitGrpcCall(connection, call, callOptions, priority, sink.listener(call, callsMap), headersMetadata, data, 1);
+    } catch (Exception e) {
+      promise.reject(e);
 
-        byte[] data = (byte[]) messageObj;
+      return;
+    }
 
-        WritableMap event = Arguments.createMap();
+    promise.resolve(null);
+  }
 
-        event.putInt("id", callId);
-        event.putString("type", "response");
-        event.putString("payload", Base64.encodeToString(data, Base64.NO_WRAP));
+  @ReactMethod
+  public void clientStreamingCall(int id, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
+    GrpcCall call = callsMap.get(id);
+    byte[] data;
 
-        emitEvent("grpc-call", event);
+    try {
+      data = GrpcPayloadCodec.decode(obj.getString("data"));
 
-        if (methodType == MethodDescriptor.MethodType.SERVER_STREAMING) {
-          call.request(1);
-        }
+      if (call == null) {
+        call = this.startGrpcCall(id, clientId, path, MethodDescriptor.MethodType.CLIENT_STREAMING, headers, getRequestOptions(obj), false);
+        call.request(1);
       }
+    } catch (Exception e) {
+      promise.reject(e);
 
-      @Override
-      public void onClose(Status status, Metadata trailers) {
-        super.onClose(status, trailers);
+      return;
+    }
 
-        callsMap.remove(callId);
+    call.sendMessage(data);
 
-        WritableMap trailersEvent = Arguments.createMap();
-        WritableMap trailersMap = Arguments.createMap();
+    promise.resolve(null);
+  }
 
-        trailersEvent.putInt("id", callId);
-        trailersEvent.putString("type", "trailers");
+  @ReactMethod
+  public void clientStreamingBatch(int id, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
+    GrpcCall call = callsMap.get(id);
+    byte[][] messages;
 
-        for (String key : trailers.keys()) {
-          if (key.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
-            byte[] data = trailers.get(Metadata.Key.of(key, Metadata.BINARY_BYTE_MARSHALLER));
+    try {
+      ReadableArray encodedMessages = obj.getArray("messages");
 
-            trailersMap.putString(key, new String(Base64.encode(data, Base64.NO_WRAP)));
-          } else if (!key.startsWith(":")) {
-            String data = trailers.get(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER));
+      messages = new byte[encodedMessages.size()][];
 
-            trailersMap.putString(key, data);
-          }
-        }
+      for (int i = 0; i < messages.length; i++) {
+        messages[i] = GrpcPayloadCodec.decode(encodedMessages.getString(i));
+      }
 
-        if (!status.isOk()) {
-          WritableMap errorEvent = Arguments.createMap();
+      if (call == null) {
+        call = this.startGrpcCall(id, clientId, path, MethodDescriptor.MethodType.CLIENT_STREAMING, headers, getRequestOptions(obj), false);
+        call.request(1);
+      }
+    } catch (Exception e) {
+      promise.reject(e);
 
-          errorEvent.putInt("id", callId);
-          errorEvent.putString("type", "error");
-          errorEvent.putString("error", status.asException(trailers).getLocalizedMessage());
-          errorEvent.putInt("code", status.getCode().value());
-          errorEvent.putMap("trailers", trailersMap.copy());
+      return;
+    }
 
-          emitEvent("grpc-call", errorEvent);
-        }
+    for (byte[] message : messages) {
+      call.sendMessage(message);
+    }
 
-        trailersEvent.putMap("payload", trailersMap);
+    promise.resolve(call.requestReady());
+  }
 
-        emitEvent("grpc-call", trailersEvent);
-      }
-    }, headersMetadata);
+  @ReactMethod
+  public void bidiStreamingCall(int id, int clientId, String path, ReadableMap obj, ReadableMap headers, final Promise promise) {
+    GrpcCall call;
+    int prefetch;
+
+    try {
+      prefetch = getPrefetch(obj);
+      call = this.startGrpcCall(id, clientId, path, MethodDescriptor.MethodType.BIDI_STREAMING, headers, getRequestOptions(obj), prefetch == 0);
+    } catch (Exception e) {
+      promise.reject(e);
 
-    if (settings.hasKey("compression") && settings.getBoolean("compression")) {
-      call.setMessageCompression(true);
+      return;
     }
 
-    return call;
+    call.request(prefetch == 0 ? 1 : prefetch);
+
+    promise.resolve(null);
   }
 
   @ReactMethod
-  public void destroyClient(int id) {
-    if (this.connections.containsKey(id)) {
-      GrpcConnection connection = this.connections.get(id);
+  public void finishClientStreaming(int id, final Promise promise) {
+    GrpcCall call = callsMap.get(id);
 
-      connection.getChannel().shutdown();
+    if (call != null) {
+      call.halfClose();
 
-      this.connections.remove(id);
+      promise.resolve(true);
+    } else {
+      promise.resolve(false);
     }
   }
 
   @ReactMethod
-  public void addListener(String eventName) {
+  public void requestMessages(int id, int count) {
+    GrpcCall call = callsMap.get(id);
+
+    if (call != null && count > 0) {
+      call.request(count);
+    }
   }
 
   @ReactMethod
-  public void removeListeners(Integer count) {
+  public void cancelGrpcCall(int id, final Promise promise) {
+    GrpcCall call = callsMap.get(id);
+
+    if (call != null) {
+      // A call shared by several ids is only cancelled once the last of them cancels.
+      if (GrpcSingleFlight.leave(call, id)) {
+        callsMap.remove(id, call);
+      } else {
+        call.cancel("Cancelled", new Exception("Cancelled by app"));
+      }
+
+      promise.resolve(true);
+    } else {
+      promise.resolve(this.cancelOutboxCall(id));
+    }
   }
 
-  private void emitEvent(String eventName, Object params) {
-    context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, params);
+  private boolean cancelOutboxCall(int id) {
+    for (GrpcConnection connection : connections.values()) {
+      GrpcOutbox outbox = connection.getOutbox();
+
+      if (outbox != null && outbox.cancel(id)) {
+        return true;
+      }
+    }
+
+    return false;
   }
 
-  private static String normalizePath(String path) {
-    if (path.startsWith("/")) {
-      path = path.substring(1);
+  private GrpcConnection getConnection(int clientId) throws Exception {
+    GrpcConnection connection = this.connections.get(clientId);
+
+    if (connection == null) {
+      throw new Exception("Channel not created");
     }
 
-    return path;
+    return connection;
+  }
+
+  private GrpcCall startGrpcCall(int callId, int clientId, String path, MethodDescriptor.MethodType methodType, ReadableMap headers, @Nullable ReadableMap options, boolean autoRequest) throws Exception {
+    return this.startGrpcCall(this.getConnection(clientId), callId, path, methodType, headers, options, autoRequest, null);
   }
 
-  private ManagedChannel createManagedChannel(int id, ReadableMap options) {
-    if (!options.hasKey("host")) {
-      throw new IllegalArgumentException("host is required");
+  private GrpcCall startGrpcCall(GrpcConnection connection, @Nullable Integer callId, String path, MethodDescriptor.MethodType methodType, ReadableMap headers, @Nullable ReadableMap options, boolean autoRequest, @Nullable GrpcCallListener.Observer observer) {
+    Metadata headersMetadata = connection.createHeaders(headers);
+    GrpcCall call = this.createGrpcCall(connection, callId, connection.getMethodDescriptor(path, methodType), connection.getCallOptions(), options);
+
+    this.startGrpcCall(connection, call, new GrpcCallListener(call, callsMap, autoRequest, methodType.serverSendsOneMessage(), observer), headersMetadata);
+
+    return call;
+  }
+
+  /**
+   * Starts a call that sends a single request once the client's call limit admits it. Calls without
+   * a JS call id, i.e. background calls, have a low priority by default.
+   */
+  private GrpcCall startRequestCall(GrpcConnection connection, @Nullable Integer callId, String path, MethodDescriptor.MethodType methodType, Metadata headers, @Nullable ReadableMap options, byte[] data, int messages, boolean autoRequest, @Nullable GrpcCallListener.Observer observer) {
+    int priority = GrpcAdmission.parsePriority(options, callId != null ? GrpcAdmission.PRIORITY_NORMAL : GrpcAdmission.PRIORITY_LOW);
+    CallOptions callOptions = connection.getCallOptions();
+    GrpcCall call = this.createGrpcCall(connection, callId, connection.getMethodDescriptor(path, methodType), callOptions, options);
+
+    this.admitGrpcCall(connection, call, callOptions, priority, new GrpcCallListener(call, callsMap, autoRequest, methodType.serverSendsOneMessage(), observer), headers, data, messages);
+
+    return call;
+  }
+
+  private void admitGrpcCall(GrpcConnection connection, GrpcCall call, CallOptions callOptions, int priority, ClientCall.Listener<byte[]> listener, Metadata headers, byte[] data, int messages) {
+    GrpcAdmission admission = connection.getAdmission();
+    GrpcAdmission.Starter starter = (admittedListener) -> {
+      this.startGrpcCall(connection, call, admittedListener, headers);
+
+      call.sendMessage(data);
+      call.request(messages);
+      call.halfClose();
+    };
+
+    if (admission != null) {
+      admission.submit(call, priority, callOptions.getDeadline(), listener, starter);
+    } else {
+      starter.start(listener);
     }
+  }
 
-    String host = options.getString("host");
+  private GrpcCall createGrpcCall(GrpcConnection connection, @Nullable Integer callId, MethodDescriptor<byte[], byte[]> method, CallOptions callOptions, @Nullable ReadableMap options) {
+    Channel channel = connection.getCallChannel();
 
-    ManagedChannelBuilder channelBuilder = ManagedChannelBuilder.forTarget(host).executor(executor);
+    ClientCall<byte[], byte[]> clientCall = channel.newCall(method, callOptions);
+    GrpcCall call = new GrpcCall(clientCall, connection.getEventDispatcher());
 
-    if (options.hasKey("insecure") && options.getBoolean("insecure")) {
-      channelBuilder = channelBuilder.usePlaintext();
+    call.setMetadataEvents(getOption(options, "receiveHeaders", true), getOption(options, "receiveTrailers", true));
+
+    // Register before starting so that an immediate onClose always finds (and removes) the entry.
+    if (callId != null) {
+      call.addTarget(callId);
+      callsMap.put(callId, call);
     }
 
-    if (options.hasKey("responseSizeLimit")) {
-      int responseSizeLimit = options.getInt("responseSizeLimit");
+    return call;
+  }
+
+  private void startGrpcCall(GrpcConnection connection, GrpcCall call, ClientCall.Listener<byte[]> listener, Metadata headers) {
+    ClientCall<byte[], byte[]> clientCall = call.getCall();
 
-      channelBuilder = channelBuilder.maxInboundMessageSize(responseSizeLimit);
+    clientCall.start(listener, headers);
+
+    if (connection.isMessageCompression()) {
+      clientCall.setMessageCompression(true);
+
+      if (connection.getCompression().getThreshold() > 0) {
+        call.setCompression(connection.getCompression());
+      }
     }
+  }
 
-    boolean keepalive = true;
+  @ReactMethod
+  public void destroyClient(int id) {
+    GrpcConnection connection = this.connections.remove(id);
 
-    if (options.hasKey("keepalive")) {
-      keepalive = options.getBoolean("keepalive");
+    if (connection != null) {
+      connection.shutdown();
     }
+  }
 
-    if (keepalive) {
-      int keepAliveTimeout = 20;
-      long keepaliveInterval = Long.MAX_VALUE;
+  @ReactMethod
+  public void addListener(String eventName) {
+  }
 
-      if (options.hasKey("keepaliveInterval")) {
-        keepaliveInterval = options.getInt("keepaliveInterval");
-      }
+  @ReactMethod
+  public void removeListeners(Integer count) {
+  }
 
-      if (options.hasKey("keepaliveTimeout")) {
-        keepAliveTimeout = options.getInt("keepaliveTimeout");
-      }
+  private static ReadableMap getRequestOptions(ReadableMap obj) {
+    if (obj.hasKey("options") && !obj.isNull("options")) {
+      return obj.getMap("options");
+    }
+
+    return null;
+  }
+
+  private static boolean getOption(@Nullable ReadableMap options, String key, boolean defaultValue) {
+    if (options == null || !options.hasKey(key) || options.isNull(key)) {
+      return defaultValue;
+    }
+
+    return options.getBoolean(key);
+  }
+
+  private static int getPrefetch(ReadableMap obj) {
+    ReadableMap options = getRequestOptions(obj);
+
+    // 0, like no prefetch, requests the next message as soon as one is received.
+    if (options == null || !options.hasKey("prefetch") || options.isNull("prefetch")) {
+      return 0;
+    }
+
+    int prefetch = options.getInt("prefetch");
 
-      channelBuilder = channelBuilder
-        .keepAliveWithoutCalls(true)
-        .keepAliveTime(keepaliveInterval, TimeUnit.SECONDS)
-        .keepAliveTimeout(keepAliveTimeout, TimeUnit.SECONDS);
+    if (prefetch < 0) {
+      throw new IllegalArgumentException("prefetch must not be negative");
     }
 
-    return channelBuilder.build();
+    return prefetch;
   }
 }
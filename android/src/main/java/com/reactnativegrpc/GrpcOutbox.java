@@ -0,0 +1,792 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+
+/**
+ * Keeps unary calls made with the {@code outbox} option in an append-only log in the app files
+ * directory, so that they survive losing the network or the app being killed. The calls are
+ * replayed in order while the channel is ready, at most {@code maxConcurrency} at a time. Calls
+ * that fail with a transient status are retried with exponential backoff, and every attempt sends
+ * the same idempotency key so that the server can drop duplicates.
+ */
+public class GrpcOutbox {
+  private static final int FILE_MAGIC = 0x4f42_4f58;
+  private static final int FILE_VERSION = 1;
+  private static final int RECORD_ADD = 1;
+  private static final int RECORD_DONE = 2;
+  // Compaction rewrites the log once it holds more finished records than this and than pending ones.
+  private static final int MIN_COMPACTION_RECORDS = 64;
+
+  private static final int DEFAULT_MAX_CONCURRENCY = 1;
+  private static final int DEFAULT_MAX_ENTRIES = 1000;
+  private static final long DEFAULT_INITIAL_BACKOFF = 1000;
+  private static final long DEFAULT_MAX_BACKOFF = 60_000;
+  private static final String DEFAULT_IDEMPOTENCY_HEADER = "idempotency-key";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final Set<Status.Code> RETRYABLE_CODES = Collections.unmodifiableSet(EnumSet.of(
+    Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED, Status.Code.ABORTED));
+
+  /**
+   * Starts a replay attempt of an entry on the client's current connection.
+   */
+  interface Sender {
+    void send(Entry entry, GrpcCallListener.Observer observer);
+  }
+
+  static class Entry {
+    // Assigned once the entry is in the log order, after loading for entries enqueued before.
+    long sequence;
+    final String key;
+    final String path;
+    final Map<String, String> headers;
+    final byte[] data;
+
+    // The JS call waiting for the result, if it was enqueued by this app launch.
+    @Nullable
+    Integer callId;
+    boolean receiveHeaders = true;
+    boolean receiveTrailers = true;
+    int attempts;
+    long retryAt;
+    boolean sending;
+
+    Entry(long sequence, String key, String path, Map<String, String> headers, byte[] data) {
+      this.sequence = sequence;
+      this.key = key;
+      this.path = path;
+      this.headers = headers;
+      this.data = data;
+    }
+  }
+
+  private final File file;
+  private final ExecutorService diskExecutor;
+  private final ScheduledExecutorService scheduler;
+  private final Sender sender;
+
+  private int maxConcurrency;
+  private int maxEntries;
+  private long initialBackoff;
+  private long maxBackoff;
+  private String idempotencyHeader;
+
+  private final LinkedHashMap<Long, Entry> pending = new LinkedHashMap<>();
+  // Entries enqueued while the log is loading, added after the recovered ones.
+  private final List<Entry> waiting = new ArrayList<>();
+  private boolean loaded;
+  private long nextSequence;
+  private int inFlight;
+  private boolean ready;
+  private boolean closed;
+  private boolean compacting;
+  private int finishedRecords;
+  private ScheduledFuture<?> retry;
+  private long retryAt;
+
+  @Nullable
+  private GrpcEventDispatcher eventDispatcher;
+  @Nullable
+  private ManagedChannel channel;
+
+  // Only touched on the disk executor.
+  private DataOutputStream log;
+
+  private long enqueued;
+  private long recovered;
+  private long delivered;
+  private long failed;
+  private long cancelled;
+  private long retries;
+  private long busySince;
+  private long busyTime;
+
+  private GrpcOutbox(File file, ExecutorService diskExecutor, ScheduledExecutorService scheduler, Sender sender) {
+    this.file = file;
+    this.diskExecutor = diskExecutor;
+    this.scheduler = scheduler;
+    this.sender = sender;
+  }
+
+  @Nullable
+  static GrpcOutbox create(ReadableMap settings, File filesDir, ExecutorService diskExecutor, ScheduledExecutorService scheduler, Sender sender) {
+    File file = getFile(settings, filesDir);
+
+    if (file == null) {
+      return null;
+    }
+
+    GrpcOutbox outbox = new GrpcOutbox(file, diskExecutor, scheduler, sender);
+
+    outbox.configure(settings.getMap("outbox"));
+    // Runs after any write still queued by a previous outbox of the same log.
+    diskExecutor.execute(outbox::load);
+
+    return outbox;
+  }
+
+  /**
+   * The log of the {@code outbox} settings. Client ids change between launches, so logs are named
+   * after the host and the optional outbox name instead.
+   */
+  @Nullable
+  static File getFile(ReadableMap settings, File filesDir) {
+    if (!settings.hasKey("outbox") || settings.isNull("outbox")) {
+      return null;
+    }
+
+    ReadableMap options = settings.getMap("outbox");
+    String host = settings.hasKey("host") ? settings.getString("host") : "";
+    String name = options.hasKey("name") ? options.getString("name") : "";
+    String id = GrpcDigest.hash((host + "\u0000" + name).getBytes(UTF_8)).substring(0, 16);
+
+    return new File(new File(filesDir, "grpc-outbox"), id + ".log");
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Applies the outbox options. Entries already in the log are kept.
+   */
+  void configure(ReadableMap options) {
+    int maxConcurrency = options.hasKey("maxConcurrency") ? options.getInt("maxConcurrency") : DEFAULT_MAX_CONCURRENCY;
+    int maxEntries = options.hasKey("maxEntries") ? options.getInt("maxEntries") : DEFAULT_MAX_ENTRIES;
+    long initialBackoff = options.hasKey("initialBackoff") ? (long) options.getDouble("initialBackoff") : DEFAULT_INITIAL_BACKOFF;
+    long maxBackoff = options.hasKey("maxBackoff") ? (long) options.getDouble("maxBackoff") : DEFAULT_MAX_BACKOFF;
+    String idempotencyHeader = options.hasKey("idempotencyHeader") ? options.getString("idempotencyHeader") : DEFAULT_IDEMPOTENCY_HEADER;
+
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("outbox.maxConcurrency must be at least 1");
+    }
+
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("outbox.maxEntries must be at least 1");
+    }
+
+    if (initialBackoff < 0) {
+      throw new IllegalArgumentException("outbox.initialBackoff must not be negative");
+    }
+
+    if (maxBackoff < initialBackoff) {
+      throw new IllegalArgumentException("outbox.maxBackoff must not be less than outbox.initialBackoff");
+    }
+
+    synchronized (this) {
+      this.maxConcurrency = maxConcurrency;
+      this.maxEntries = maxEntries;
+      this.initialBackoff = initialBackoff;
+      this.maxBackoff = maxBackoff;
+      this.idempotencyHeader = idempotencyHeader.toLowerCase(Locale.ROOT);
+    }
+
+    pump();
+  }
+
+  /**
+   * Makes the outbox replay on the connection, which replaces the previous one after a settings
+   * update.
+   */
+  void attach(GrpcConnection connection) {
+    synchronized (this) {
+      eventDispatcher = connection.getEventDispatcher();
+      channel = connection.getChannel();
+      ready = channel.getState(false) == ConnectivityState.READY;
+    }
+
+    pump();
+  }
+
+  void onConnectivityState(ConnectivityState state) {
+    synchronized (this) {
+      ready = state == ConnectivityState.READY;
+    }
+
+    pump();
+  }
+
+  /**
+   * Adds a call to the log. Its result is sent to {@code callId} once it is delivered or fails
+   * with a status that isn't retried. Calls enqueued before the log is loaded are written after the
+   * recovered ones.
+   */
+  void enqueue(int callId, String path, Map<String, String> headers, byte[] data, boolean receiveHeaders, boolean receiveTrailers) {
+    final Entry entry;
+
+    checkLength("Path", path);
+
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      checkLength("Header " + header.getKey(), header.getKey());
+      checkLength("Header " + header.getKey(), header.getValue());
+    }
+
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("Client destroyed");
+      }
+
+      if (pending.size() + waiting.size() >= maxEntries) {
+        throw new IllegalStateException("Outbox is full");
+      }
+
+      // An idempotency key set by the app is kept, e.g. to deduplicate across devices.
+      String key = getHeader(headers, idempotencyHeader);
+
+      if (key == null) {
+        key = UUID.randomUUID().toString();
+        headers.put(idempotencyHeader, key);
+      }
+
+      entry = new Entry(-1, key, path, headers, data);
+      entry.callId = callId;
+      entry.receiveHeaders = receiveHeaders;
+      entry.receiveTrailers = receiveTrailers;
+      enqueued++;
+
+      if (!loaded) {
+        waiting.add(entry);
+        return;
+      }
+
+      entry.sequence = nextSequence++;
+      pending.put(entry.sequence, entry);
+
+      // Queued under the lock so that records are written in sequence order.
+      writeOnDisk(() -> append(entry));
+    }
+
+    pump();
+  }
+
+  /**
+   * Cancels the JS call of an entry. An entry that isn't being sent is removed from the log, one
+   * that is being sent may still be delivered.
+   */
+  boolean cancel(int callId) {
+    GrpcEventDispatcher eventDispatcher;
+
+    synchronized (this) {
+      Entry entry = findCall(pending.values(), callId);
+
+      if (entry != null) {
+        entry.callId = null;
+
+        if (!entry.sending) {
+          cancelled++;
+          finish(entry);
+        }
+      } else {
+        entry = findCall(waiting, callId);
+
+        if (entry == null) {
+          return false;
+        }
+
+        waiting.remove(entry);
+        cancelled++;
+      }
+
+      eventDispatcher = this.eventDispatcher;
+    }
+
+    if (eventDispatcher != null) {
+      eventDispatcher.emitClose(callId, Status.CANCELLED, "CANCELLED: Cancelled by app", null, null);
+    }
+
+    return true;
+  }
+
+  @Nullable
+  private static String getHeader(Map<String, String> headers, String name) {
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      if (header.getKey().equalsIgnoreCase(name)) {
+        return header.getValue();
+      }
+    }
+
+    return null;
+  }
+
+  @Nullable
+  private static Entry findCall(Iterable<Entry> entries, int callId) {
+    for (Entry entry : entries) {
+      if (entry.callId != null && entry.callId == callId) {
+        return entry;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Stops replaying. Entries left in the log are replayed by the next outbox of the same log.
+   */
+  void close() {
+    synchronized (this) {
+      closed = true;
+
+      if (retry != null) {
+        retry.cancel(false);
+        retry = null;
+      }
+    }
+
+    writeOnDisk(this::closeLog);
+  }
+
+  public synchronized WritableMap getMetrics() {
+    long busyTime = this.busyTime;
+
+    if (inFlight > 0) {
+      busyTime += System.nanoTime() - busySince;
+    }
+
+    double busySeconds = busyTime / 1_000_000_000.0;
+
+    WritableMap metrics = Arguments.createMap();
+
+    metrics.putInt("queued", pending.size() + waiting.size());
+    metrics.putInt("inFlight", inFlight);
+    metrics.putDouble("enqueued", enqueued);
+    metrics.putDouble("recovered", recovered);
+    metrics.putDouble("delivered", delivered);
+    metrics.putDouble("failed", failed);
+    metrics.putDouble("cancelled", cancelled);
+    metrics.putDouble("retries", retries);
+    metrics.putDouble("replayRate", busySeconds == 0 ? 0 : (delivered + failed) / busySeconds);
+    metrics.putDouble("logSize", file.length());
+
+    return metrics;
+  }
+
+  /**
+   * Starts the next entries in log order while the channel is ready and below the concurrency
+   * limit. An entry waiting for its backoff holds back the entries after it.
+   */
+  private void pump() {
+    List<Entry> entries = new ArrayList<>();
+    ManagedChannel idleChannel = null;
+
+    synchronized (this) {
+      if (closed || !loaded || pending.isEmpty()) {
+        return;
+      }
+
+      if (!ready) {
+        idleChannel = channel;
+      } else {
+        long now = System.nanoTime();
+
+        for (Entry entry : pending.values()) {
+          if (inFlight >= maxConcurrency) {
+            break;
+          }
+
+          if (entry.sending) {
+            continue;
+          }
+
+          if (entry.retryAt - now > 0) {
+            scheduleRetry(entry.retryAt);
+            break;
+          }
+
+          if (inFlight++ == 0) {
+            busySince = now;
+          }
+
+          entry.sending = true;
+          entries.add(entry);
+        }
+      }
+    }
+
+    if (idleChannel != null) {
+      // Leaves IDLE; other states reconnect on their own backoff.
+      idleChannel.getState(true);
+    }
+
+    for (Entry entry : entries) {
+      send(entry);
+    }
+  }
+
+  private void send(Entry entry) {
+    Attempt attempt = new Attempt(entry);
+
+    try {
+      sender.send(entry, attempt);
+    } catch (RuntimeException e) {
+      attempt.onClose(Status.UNAVAILABLE.withDescription("Could not start the call").withCause(e), Collections.emptyMap());
+    }
+  }
+
+  private void complete(Entry entry, Status status, @Nullable Map<String, String> headers, @Nullable String payload, Map<String, String> trailers) {
+    Integer callId = null;
+    GrpcEventDispatcher eventDispatcher;
+
+    synchronized (this) {
+      long now = System.nanoTime();
+
+      entry.sending = false;
+
+      if (--inFlight == 0) {
+        busyTime += now - busySince;
+      }
+
+      if (closed) {
+        // The call was cancelled by the client shutting down; the entry stays in the log.
+        return;
+      }
+
+      if (!status.isOk() && RETRYABLE_CODES.contains(status.getCode())) {
+        long backoff = Math.min(maxBackoff, initialBackoff << Math.min(entry.attempts, 30));
+
+        entry.attempts++;
+        // Jitter keeps clients that went offline together from retrying together.
+        entry.retryAt = now + TimeUnit.MILLISECONDS.toNanos((long) (backoff * (0.8 + Math.random() * 0.4)));
+        retries++;
+      } else if (pending.containsKey(entry.sequence)) {
+        if (status.isOk()) {
+          delivered++;
+        } else {
+          failed++;
+        }
+
+        callId = entry.callId;
+        entry.callId = null;
+
+        finish(entry);
+      }
+
+      eventDispatcher = this.eventDispatcher;
+    }
+
+    if (callId != null && eventDispatcher != null) {
+      if (entry.receiveHeaders && headers != null) {
+        eventDispatcher.emitHeaders(callId, headers);
+      }
+
+      String error = status.isOk() ? null : status.asException().getLocalizedMessage();
+
+      eventDispatcher.emitClose(callId, status, error, entry.receiveTrailers ? trailers : null, status.isOk() ? payload : null);
+    }
+
+    pump();
+  }
+
+  /**
+   * Removes an entry from the log. Called with the lock held.
+   */
+  private void finish(Entry entry) {
+    pending.remove(entry.sequence);
+    // The entry's add record and its done record.
+    finishedRecords += 2;
+
+    final long sequence = entry.sequence;
+
+    writeOnDisk(() -> appendDone(sequence));
+
+    if (!compacting && finishedRecords >= MIN_COMPACTION_RECORDS && finishedRecords > pending.size()) {
+      compacting = true;
+
+      writeOnDisk(this::compact);
+    }
+  }
+
+  private void scheduleRetry(long at) {
+    if (retry != null && retryAt - at <= 0) {
+      return;
+    }
+
+    if (retry != null) {
+      retry.cancel(false);
+    }
+
+    try {
+      retry = scheduler.schedule(() -> {
+        synchronized (this) {
+          retry = null;
+        }
+
+        pump();
+      }, at - System.nanoTime(), TimeUnit.NANOSECONDS);
+      retryAt = at;
+    } catch (RejectedExecutionException e) {
+      // The module is shutting down.
+      retry = null;
+    }
+  }
+
+  private void writeOnDisk(Runnable task) {
+    try {
+      diskExecutor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // The module is shutting down. The entries are still in the log or replayed again.
+    }
+  }
+
+  /**
+   * Reads the log and rewrites it with the pending entries only. A record cut short because the
+   * app was killed while writing it ends the log. Nothing is sent before it finishes.
+   */
+  private void load() {
+    LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+    long nextSequence = 0;
+
+    if (file.exists()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        if (in.readInt() == FILE_MAGIC && in.readInt() == FILE_VERSION) {
+          int type;
+
+          while ((type = in.read()) != -1) {
+            long sequence = in.readLong();
+
+            if (type == RECORD_ADD) {
+              entries.put(sequence, readEntry(in, sequence));
+            } else if (type == RECORD_DONE) {
+              entries.remove(sequence);
+            } else {
+              break;
+            }
+
+            nextSequence = Math.max(nextSequence, sequence + 1);
+          }
+        }
+      } catch (IOException e) {
+        // Keeps the entries read so far.
+      }
+    }
+
+    synchronized (this) {
+      pending.putAll(entries);
+      recovered = entries.size();
+
+      for (Entry entry : waiting) {
+        entry.sequence = nextSequence++;
+        pending.put(entry.sequence, entry);
+      }
+
+      waiting.clear();
+      this.nextSequence = nextSequence;
+      loaded = true;
+    }
+
+    // Also writes the entries enqueued while loading.
+    compact();
+    pump();
+  }
+
+  private void compact() {
+    Entry[] entries;
+
+    synchronized (this) {
+      entries = pending.values().toArray(new Entry[0]);
+      finishedRecords = 0;
+      compacting = false;
+    }
+
+    closeLog();
+
+    File directory = file.getParentFile();
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      return;
+    }
+
+    File temp = new File(directory, file.getName() + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(FILE_MAGIC);
+      out.writeInt(FILE_VERSION);
+
+      for (Entry entry : entries) {
+        writeEntry(out, entry);
+      }
+    } catch (IOException e) {
+      //noinspection ResultOfMethodCallIgnored
+      temp.delete();
+
+      return;
+    }
+
+    if (!temp.renameTo(file)) {
+      //noinspection ResultOfMethodCallIgnored
+      temp.delete();
+    }
+  }
+
+  private void append(Entry entry) {
+    try {
+      DataOutputStream out = openLog();
+
+      writeEntry(out, entry);
+      out.flush();
+    } catch (IOException e) {
+      closeLog();
+    }
+  }
+
+  private void appendDone(long sequence) {
+    try {
+      DataOutputStream out = openLog();
+
+      out.writeByte(RECORD_DONE);
+      out.writeLong(sequence);
+      out.flush();
+    } catch (IOException e) {
+      closeLog();
+    }
+  }
+
+  /**
+   * The log, opened for appending. Flushing each record hands it to the OS, so it survives the app
+   * being killed; only a device crash can lose the last records.
+   */
+  private DataOutputStream openLog() throws IOException {
+    if (log == null) {
+      File directory = file.getParentFile();
+
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Could not create " + directory);
+      }
+
+      boolean empty = file.length() == 0;
+
+      log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+
+      if (empty) {
+        log.writeInt(FILE_MAGIC);
+        log.writeInt(FILE_VERSION);
+      }
+    }
+
+    return log;
+  }
+
+  private void closeLog() {
+    if (log == null) {
+      return;
+    }
+
+    try {
+      log.close();
+    } catch (IOException e) {
+      // Records that weren't flushed are replayed or written again.
+    }
+
+    log = null;
+  }
+
+  /**
+   * Throws if the string doesn't fit {@link DataOutputStream#writeUTF}, which writes its encoded
+   * length in 2 bytes.
+   */
+  private static void checkLength(String name, String value) {
+    long length = 0;
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+
+      length += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+    }
+
+    if (length > 0xffff) {
+      throw new IllegalArgumentException(name + " is too long for the outbox: " + length + " bytes");
+    }
+  }
+
+  private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+    out.writeByte(RECORD_ADD);
+    out.writeLong(entry.sequence);
+    out.writeUTF(entry.key);
+    out.writeUTF(entry.path);
+    out.writeInt(entry.headers.size());
+
+    for (Map.Entry<String, String> header : entry.headers.entrySet()) {
+      out.writeUTF(header.getKey());
+      out.writeUTF(header.getValue());
+    }
+
+    out.writeInt(entry.data.length);
+    out.write(entry.data);
+  }
+
+  private static Entry readEntry(DataInputStream in, long sequence) throws IOException {
+    String key = in.readUTF();
+    String path = in.readUTF();
+    int headerCount = in.readInt();
+    Map<String, String> headers = new LinkedHashMap<>();
+
+    for (int i = 0; i < headerCount; i++) {
+      headers.put(in.readUTF(), in.readUTF());
+    }
+
+    byte[] data = new byte[in.readInt()];
+
+    in.readFully(data);
+
+    return new Entry(sequence, key, path, headers, data);
+  }
+
+  /**
+   * Collects the result of one replay attempt.
+   */
+  private class Attempt implements GrpcCallListener.Observer {
+    private final Entry entry;
+    private Map<String, String> headers;
+    private String payload;
+
+    Attempt(Entry entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public void onHeaders(Map<String, String> headers) {
+      this.headers = headers;
+    }
+
+    @Override
+    public void onMessage(String payload) {
+      this.payload = payload;
+    }
+
+    @Override
+    public void onClose(Status status, Map<String, String> trailers) {
+      complete(entry, status, headers, payload, trailers);
+    }
+  }
+}
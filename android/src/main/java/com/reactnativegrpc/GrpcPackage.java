@@ -10,11 +10,27 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class GrpcPackage implements ReactPackage {
+  private final GrpcChannelConfigurator channelConfigurator;
+  private final GrpcInterceptorProvider interceptorProvider;
+
+  public GrpcPackage() {
+    this(null, null);
+  }
+
+  public GrpcPackage(GrpcChannelConfigurator channelConfigurator) {
+    this(channelConfigurator, null);
+  }
+
+  public GrpcPackage(GrpcChannelConfigurator channelConfigurator, GrpcInterceptorProvider interceptorProvider) {
+    this.channelConfigurator = channelConfigurator;
+    this.interceptorProvider = interceptorProvider;
+  }
+
   @NonNull
   @Override
   public ArrayList createNativeModules(@NonNull ReactApplicationContext reactContext) {
     ArrayList modules = new ArrayList();
-    modules.add(new GrpcModule(reactContext));
+    modules.add(new GrpcModule(reactContext, channelConfigurator, interceptorProvider));
 
     return modules;
   }
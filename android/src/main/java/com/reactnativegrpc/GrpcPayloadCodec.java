@@ -0,0 +1,166 @@
+package com.reactnativegrpc;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Base64 codec for payloads crossing the bridge, compatible with {@link android.util.Base64} with
+ * {@code NO_WRAP}. Decoding reads the string's characters straight into the output array instead
+ * of copying the string to bytes first, and the output only needs trimming if the input contains
+ * line breaks or other characters outside the alphabet, which are skipped. Encoding makes the same
+ * copies as {@code Base64.encodeToString}: one buffer and the string built from it.
+ */
+final class GrpcPayloadCodec {
+  // StandardCharsets needs API 19.
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+  private static final byte[] ALPHABET =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(US_ASCII);
+
+  private static final int[] DECODE_TABLE = new int[128];
+
+  static {
+    for (int i = 0; i < DECODE_TABLE.length; i++) {
+      DECODE_TABLE[i] = -1;
+    }
+
+    for (int i = 0; i < ALPHABET.length; i++) {
+      DECODE_TABLE[ALPHABET[i]] = i;
+    }
+  }
+
+  private GrpcPayloadCodec() {
+  }
+
+  static String encode(byte[] data) {
+    return encode(data, 0, data.length);
+  }
+
+  static String encode(byte[] data, int offset, int length) {
+    byte[] out = new byte[((length + 2) / 3) * 4];
+
+    int end = offset + length;
+    int fullEnd = offset + (length / 3) * 3;
+    int o = 0;
+    int i = offset;
+
+    while (i < fullEnd) {
+      int bits = (data[i++] & 0xff) << 16 | (data[i++] & 0xff) << 8 | (data[i++] & 0xff);
+
+      out[o++] = ALPHABET[(bits >>> 18) & 0x3f];
+      out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+      out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+      out[o++] = ALPHABET[bits & 0x3f];
+    }
+
+    int remaining = end - i;
+
+    if (remaining > 0) {
+      int bits = (data[i] & 0xff) << 16;
+
+      if (remaining == 2) {
+        bits |= (data[i + 1] & 0xff) << 8;
+      }
+
+      out[o++] = ALPHABET[(bits >>> 18) & 0x3f];
+      out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+      out[o++] = remaining == 2 ? ALPHABET[(bits >>> 6) & 0x3f] : (byte) '=';
+      out[o] = '=';
+    }
+
+    return new String(out, US_ASCII);
+  }
+
+  /**
+   * Decodes Base64 with or without padding. Characters outside the alphabet, such as whitespace,
+   * are skipped, and decoding stops at the first {@code =}, after which only padding and skipped
+   * characters may follow.
+   */
+  static byte[] decode(String data) {
+    int length = data.length();
+    int end = length;
+
+    while (end > 0 && data.charAt(end - 1) == '=') {
+      end--;
+    }
+
+    // Exact unless characters are skipped.
+    byte[] out = new byte[(int) ((long) end * 3 / 4)];
+
+    int o = 0;
+    int i = 0;
+
+    // Whole groups of alphabet characters, all of the input before the padding without line breaks.
+    while (i + 4 <= end) {
+      char c0 = data.charAt(i);
+      char c1 = data.charAt(i + 1);
+      char c2 = data.charAt(i + 2);
+      char c3 = data.charAt(i + 3);
+
+      if ((c0 | c1 | c2 | c3) >= 128) {
+        break;
+      }
+
+      // Negative if any of them is outside the alphabet.
+      int bits = DECODE_TABLE[c0] << 18 | DECODE_TABLE[c1] << 12 | DECODE_TABLE[c2] << 6 | DECODE_TABLE[c3];
+
+      if (bits < 0) {
+        break;
+      }
+
+      out[o++] = (byte) (bits >> 16);
+      out[o++] = (byte) (bits >> 8);
+      out[o++] = (byte) bits;
+
+      i += 4;
+    }
+
+    int bits = 0;
+    int count = 0;
+    boolean padding = false;
+
+    for (; i < length; i++) {
+      char c = data.charAt(i);
+
+      if (c == '=') {
+        padding = true;
+
+        continue;
+      }
+
+      int value = c < 128 ? DECODE_TABLE[c] : -1;
+
+      if (value < 0) {
+        continue;
+      }
+
+      if (padding) {
+        throw new IllegalArgumentException("Invalid payload: data after padding at index " + i);
+      }
+
+      bits = (bits << 6) | value;
+
+      if (++count == 4) {
+        out[o++] = (byte) (bits >> 16);
+        out[o++] = (byte) (bits >> 8);
+        out[o++] = (byte) bits;
+
+        bits = 0;
+        count = 0;
+      }
+    }
+
+    if (count == 1) {
+      throw new IllegalArgumentException("Invalid payload length");
+    }
+
+    if (count == 3) {
+      out[o++] = (byte) (bits >> 10);
+      out[o++] = (byte) (bits >> 2);
+    } else if (count == 2) {
+      out[o++] = (byte) (bits >> 4);
+    }
+
+    return o == out.length ? out : Arrays.copyOf(out, o);
+  }
+}
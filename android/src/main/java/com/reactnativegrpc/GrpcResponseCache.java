@@ -0,0 +1,479 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * In-memory LRU cache of unary responses, optionally mirrored to disk. Entries are fresh for
+ * {@code ttl} milliseconds and may then be served for another {@code staleWhileRevalidate}
+ * milliseconds while a background call refreshes them.
+ */
+public class GrpcResponseCache {
+  private static final int FILE_VERSION = 1;
+  private static final long ENTRY_OVERHEAD = 64;
+
+  private static final long DEFAULT_TTL = 60_000;
+  private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+  /**
+   * Receives the result of a lookup, on the disk executor if the entry had to be read from disk.
+   */
+  interface Lookup {
+    void onEntry(@Nullable Entry entry);
+  }
+
+  static class Entry {
+    final Map<String, String> headers;
+    final String response;
+    final Map<String, String> trailers;
+    final long storedAt;
+    final long size;
+
+    Entry(Map<String, String> headers, String response, Map<String, String> trailers, long storedAt) {
+      this.headers = headers;
+      this.response = response;
+      this.trailers = trailers;
+      this.storedAt = storedAt;
+      this.size = ENTRY_OVERHEAD + response.length() + sizeOf(headers) + sizeOf(trailers);
+    }
+  }
+
+  private final long ttl;
+  private final long staleWhileRevalidate;
+  private final long maxBytes;
+  private final List<String> keyHeaders;
+  @Nullable
+  private final File directory;
+  private final Executor diskExecutor;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<String> revalidating = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private long totalBytes;
+
+  private long hits;
+  private long staleHits;
+  private long misses;
+  private long stores;
+  private long evictions;
+  private long revalidations;
+
+  private GrpcResponseCache(ReadableMap options, @Nullable File directory, Executor diskExecutor) {
+    this.ttl = options.hasKey("ttl") ? (long) options.getDouble("ttl") : DEFAULT_TTL;
+    this.staleWhileRevalidate = options.hasKey("staleWhileRevalidate") ? (long) options.getDouble("staleWhileRevalidate") : 0;
+    this.maxBytes = options.hasKey("maxBytes") ? (long) options.getDouble("maxBytes") : DEFAULT_MAX_BYTES;
+    this.directory = directory;
+    this.diskExecutor = diskExecutor;
+
+    if (ttl < 0 || staleWhileRevalidate < 0) {
+      throw new IllegalArgumentException("cache.ttl and cache.staleWhileRevalidate must not be negative");
+    }
+
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("cache.maxBytes must be positive");
+    }
+
+    List<String> headers = new ArrayList<>();
+
+    if (options.hasKey("headers")) {
+      ReadableArray headerNames = options.getArray("headers");
+
+      for (int i = 0; i < headerNames.size(); i++) {
+        String name = headerNames.getString(i).toLowerCase(Locale.ROOT);
+
+        // Rejects names that can't be headers.
+        if (name.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+          GrpcMetadataConverter.binaryKey(name);
+        } else {
+          GrpcMetadataConverter.asciiKey(name);
+        }
+
+        headers.add(name);
+      }
+    }
+
+    this.keyHeaders = headers;
+
+    if (directory != null) {
+      diskExecutor.execute(this::pruneDirectory);
+    }
+  }
+
+  @Nullable
+  static GrpcResponseCache create(ReadableMap settings, File cacheRoot, Executor diskExecutor) {
+    if (!settings.hasKey("cache") || settings.isNull("cache")) {
+      return null;
+    }
+
+    ReadableMap options = settings.getMap("cache");
+    File directory = null;
+
+    if (options.hasKey("persist") && options.getBoolean("persist")) {
+      // Client ids change between launches, so persisted entries are grouped by host instead.
+      String host = settings.hasKey("host") ? settings.getString("host") : "";
+
+      directory = new File(new File(cacheRoot, "grpc-cache"), GrpcDigest.hash(host.getBytes(UTF_8)).substring(0, 16));
+    }
+
+    return new GrpcResponseCache(options, directory, diskExecutor);
+  }
+
+  /**
+   * The key of a request, from the headers that are sent with it, i.e. the client's default headers
+   * merged with the call's.
+   */
+  public String key(String path, byte[] data, Metadata headers) {
+    MessageDigest digest = GrpcDigest.newDigest();
+
+    digest.update(path.getBytes(UTF_8));
+
+    for (String name : keyHeaders) {
+      GrpcDigest.updateHeader(digest, headers, name);
+    }
+
+    digest.update((byte) 0);
+    digest.update(data);
+
+    return GrpcDigest.toHex(digest.digest());
+  }
+
+  /**
+   * Looks up a response that can be served. Entries in memory are passed to {@code lookup} right
+   * away, others are read from disk on the disk executor.
+   */
+  public void get(final String key, final Lookup lookup) {
+    Entry entry;
+
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+
+    if (entry != null || directory == null) {
+      lookup.onEntry(servable(key, entry));
+
+      return;
+    }
+
+    diskExecutor.execute(() -> {
+      Entry stored = readEntry(key);
+
+      if (stored != null) {
+        synchronized (this) {
+          insert(key, stored);
+        }
+      }
+
+      lookup.onEntry(servable(key, stored));
+    });
+  }
+
+  @Nullable
+  private Entry servable(String key, @Nullable Entry entry) {
+    long age = entry != null ? System.currentTimeMillis() - entry.storedAt : 0;
+
+    synchronized (this) {
+      if (entry == null || age > ttl + staleWhileRevalidate) {
+        if (entry != null) {
+          remove(key);
+        }
+
+        misses++;
+
+        return null;
+      }
+
+      if (age > ttl) {
+        staleHits++;
+      } else {
+        hits++;
+      }
+    }
+
+    return entry;
+  }
+
+  public boolean isStale(Entry entry) {
+    return System.currentTimeMillis() - entry.storedAt > ttl;
+  }
+
+  /**
+   * Returns false if the entry is already being revalidated.
+   */
+  public boolean beginRevalidation(String key) {
+    if (revalidating.add(key)) {
+      synchronized (this) {
+        revalidations++;
+      }
+
+      return true;
+    }
+
+    return false;
+  }
+
+  public void endRevalidation(String key) {
+    revalidating.remove(key);
+  }
+
+  public GrpcCallListener.Observer recorder(final String key, final boolean revalidation) {
+    return new GrpcCallListener.Observer() {
+      private Map<String, String> headers = Collections.emptyMap();
+      private String response;
+      private int messages;
+
+      @Override
+      public void onHeaders(Map<String, String> headers) {
+        this.headers = headers;
+      }
+
+      @Override
+      public void onMessage(String payload) {
+        this.response = payload;
+        this.messages++;
+      }
+
+      @Override
+      public void onClose(Status status, Map<String, String> trailers) {
+        if (revalidation) {
+          endRevalidation(key);
+        }
+
+        if (status.isOk() && messages == 1) {
+          put(key, new Entry(headers, response, trailers, System.currentTimeMillis()));
+        }
+      }
+    };
+  }
+
+  public synchronized WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+
+    metrics.putDouble("hits", hits);
+    metrics.putDouble("staleHits", staleHits);
+    metrics.putDouble("misses", misses);
+    metrics.putDouble("stores", stores);
+    metrics.putDouble("evictions", evictions);
+    metrics.putDouble("revalidations", revalidations);
+    metrics.putInt("entries", entries.size());
+    metrics.putDouble("bytes", totalBytes);
+    metrics.putDouble("maxBytes", maxBytes);
+
+    return metrics;
+  }
+
+  private void put(final String key, final Entry entry) {
+    if (entry.size > maxBytes) {
+      return;
+    }
+
+    synchronized (this) {
+      remove(key);
+      insert(key, entry);
+
+      stores++;
+    }
+
+    if (directory != null) {
+      diskExecutor.execute(() -> writeEntry(key, entry));
+    }
+  }
+
+  private void insert(String key, Entry entry) {
+    Entry previous = entries.put(key, entry);
+
+    if (previous != null) {
+      totalBytes -= previous.size;
+    }
+
+    totalBytes += entry.size;
+
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+    while (totalBytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Entry> eldest = iterator.next();
+
+      if (eldest.getKey().equals(key)) {
+        continue;
+      }
+
+      iterator.remove();
+
+      totalBytes -= eldest.getValue().size;
+      evictions++;
+
+      deleteFile(eldest.getKey());
+    }
+  }
+
+  private void remove(String key) {
+    Entry removed = entries.remove(key);
+
+    if (removed != null) {
+      totalBytes -= removed.size;
+
+      deleteFile(key);
+    }
+  }
+
+  private void deleteFile(final String key) {
+    if (directory != null) {
+      diskExecutor.execute(() -> {
+        //noinspection ResultOfMethodCallIgnored
+        new File(directory, key).delete();
+      });
+    }
+  }
+
+  private void writeEntry(String key, Entry entry) {
+    if (!directory.exists() && !directory.mkdirs()) {
+      return;
+    }
+
+    File file = new File(directory, key);
+    File temp = new File(directory, key + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(FILE_VERSION);
+      out.writeLong(entry.storedAt);
+      writeMap(out, entry.headers);
+      writeMap(out, entry.trailers);
+
+      byte[] response = entry.response.getBytes(US_ASCII);
+
+      out.writeInt(response.length);
+      out.write(response);
+    } catch (IOException e) {
+      //noinspection ResultOfMethodCallIgnored
+      temp.delete();
+
+      return;
+    }
+
+    if (!temp.renameTo(file)) {
+      //noinspection ResultOfMethodCallIgnored
+      temp.delete();
+    }
+  }
+
+  @Nullable
+  private Entry readEntry(String key) {
+    File file = new File(directory, key);
+
+    if (!file.exists()) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != FILE_VERSION) {
+        return null;
+      }
+
+      long storedAt = in.readLong();
+      Map<String, String> headers = readMap(in);
+      Map<String, String> trailers = readMap(in);
+      byte[] response = new byte[in.readInt()];
+
+      in.readFully(response);
+
+      return new Entry(headers, new String(response, US_ASCII), trailers, storedAt);
+    } catch (IOException e) {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+
+      return null;
+    }
+  }
+
+  private void pruneDirectory() {
+    File[] files = directory.listFiles();
+
+    if (files == null) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    long size = 0;
+    List<File> kept = new ArrayList<>();
+
+    for (File file : files) {
+      if (file.getName().endsWith(".tmp") || now - file.lastModified() > ttl + staleWhileRevalidate) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      } else {
+        kept.add(file);
+        size += file.length();
+      }
+    }
+
+    File[] sorted = kept.toArray(new File[0]);
+
+    Arrays.sort(sorted, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+    for (int i = 0; i < sorted.length && size > maxBytes; i++) {
+      size -= sorted[i].length();
+
+      //noinspection ResultOfMethodCallIgnored
+      sorted[i].delete();
+    }
+  }
+
+  private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+    out.writeInt(map.size());
+
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeUTF(entry.getValue());
+    }
+  }
+
+  private static Map<String, String> readMap(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    Map<String, String> map = new LinkedHashMap<>();
+
+    for (int i = 0; i < size; i++) {
+      map.put(in.readUTF(), in.readUTF());
+    }
+
+    return map;
+  }
+
+  private static long sizeOf(Map<String, String> map) {
+    long size = 0;
+
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      size += entry.getKey().length() + entry.getValue().length();
+    }
+
+    return size * 2;
+  }
+}
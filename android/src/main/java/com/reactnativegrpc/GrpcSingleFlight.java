@@ -0,0 +1,166 @@
+package com.reactnativegrpc;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Lets identical concurrent unary requests share one call. A request can join an in-flight call
+ * until that call receives its response.
+ */
+public class GrpcSingleFlight {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final ConcurrentHashMap<String, GrpcCall> flights = new ConcurrentHashMap<>();
+  private final AtomicLong started = new AtomicLong();
+  private final AtomicLong joined = new AtomicLong();
+
+  /**
+   * Keys a call by the metadata it sends, default headers included. Calls only share a flight if
+   * they also ask for the same metadata events.
+   */
+  public String key(String path, byte[] data, Metadata headers, boolean receiveHeaders, boolean receiveTrailers) {
+    MessageDigest digest = GrpcDigest.newDigest();
+    String[] names = headers.keys().toArray(new String[0]);
+
+    Arrays.sort(names);
+
+    digest.update(path.getBytes(UTF_8));
+    digest.update((byte) ((receiveHeaders ? 1 : 0) | (receiveTrailers ? 2 : 0)));
+
+    for (String name : names) {
+      GrpcDigest.updateHeader(digest, headers, name);
+    }
+
+    digest.update((byte) 0);
+    digest.update(data);
+
+    return GrpcDigest.toHex(digest.digest());
+  }
+
+  /**
+   * Adds the call id as a target of the in-flight call for the key, if there is one that can still
+   * be joined.
+   */
+  @Nullable
+  public GrpcCall join(String key, int callId, Map<Integer, GrpcCall> registry) {
+    GrpcCall call = flights.get(key);
+
+    if (call == null || !call.join(callId, registry)) {
+      return null;
+    }
+
+    joined.incrementAndGet();
+
+    Map<String, String> headers = call.getHeaders();
+
+    if (headers != null && call.receivesHeaders()) {
+      call.getEventDispatcher().emitHeaders(callId, headers);
+    }
+
+    return call;
+  }
+
+  public Flight newFlight(String key, @Nullable GrpcCallListener.Observer delegate) {
+    return new Flight(key, delegate);
+  }
+
+  /**
+   * Detaches one target from a shared call, completing it as cancelled. Returns false if it was the
+   * last target, in which case the call itself should be cancelled.
+   */
+  public static boolean leave(GrpcCall call, int callId) {
+    if (!call.leave(callId)) {
+      return false;
+    }
+
+    Status status = Status.CANCELLED.withDescription("Cancelled by app");
+    Map<String, String> trailers = call.receivesTrailers() ? Collections.<String, String>emptyMap() : null;
+
+    call.getEventDispatcher().emitClose(callId, status, status.asException().getLocalizedMessage(), trailers, null);
+
+    return true;
+  }
+
+  public WritableMap getMetrics() {
+    WritableMap metrics = Arguments.createMap();
+
+    metrics.putInt("inFlight", flights.size());
+    metrics.putDouble("calls", started.get());
+    metrics.putDouble("joined", joined.get());
+
+    return metrics;
+  }
+
+  /**
+   * Observes the leading call of a flight and removes it once it can no longer be joined.
+   */
+  public class Flight implements GrpcCallListener.Observer {
+    private final String key;
+    @Nullable
+    private final GrpcCallListener.Observer delegate;
+    private volatile GrpcCall call;
+
+    private Flight(String key, @Nullable GrpcCallListener.Observer delegate) {
+      this.key = key;
+      this.delegate = delegate;
+    }
+
+    public void start(GrpcCall call) {
+      this.call = call;
+
+      started.incrementAndGet();
+      flights.put(key, call);
+
+      // The call may have been sealed before it was published, in which case release() missed it.
+      if (call.isSealed()) {
+        flights.remove(key, call);
+      }
+    }
+
+    @Override
+    public void onHeaders(Map<String, String> headers) {
+      if (delegate != null) {
+        delegate.onHeaders(headers);
+      }
+    }
+
+    @Override
+    public void onMessage(String payload) {
+      release();
+
+      if (delegate != null) {
+        delegate.onMessage(payload);
+      }
+    }
+
+    @Override
+    public void onClose(Status status, Map<String, String> trailers) {
+      release();
+
+      if (delegate != null) {
+        delegate.onClose(status, trailers);
+      }
+    }
+
+    private void release() {
+      GrpcCall call = this.call;
+
+      if (call != null) {
+        flights.remove(key, call);
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.ReadableArray;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+
+/**
+ * Resolves a channel to a fixed list of {@code host:port} addresses instead of a single DNS name,
+ * so the load balancing policy can spread calls over them.
+ */
+final class GrpcStaticNameResolverFactory extends NameResolver.Factory {
+  static final String SCHEME = "static";
+
+  private final String authority;
+  private final List<String> addresses;
+
+  private GrpcStaticNameResolverFactory(String authority, List<String> addresses) {
+    this.authority = authority;
+    this.addresses = addresses;
+  }
+
+  static GrpcStaticNameResolverFactory create(String authority, ReadableArray addresses) {
+    if (addresses.size() == 0) {
+      throw new IllegalArgumentException("addresses must not be empty");
+    }
+
+    List<String> list = new ArrayList<>(addresses.size());
+
+    for (int i = 0; i < addresses.size(); i++) {
+      String address = addresses.getString(i);
+
+      parsePort(address);
+      list.add(address);
+    }
+
+    return new GrpcStaticNameResolverFactory(authority, Collections.unmodifiableList(list));
+  }
+
+  String getTarget() {
+    return SCHEME + ":///" + authority;
+  }
+
+  @Override
+  public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+    if (!SCHEME.equals(targetUri.getScheme())) {
+      return null;
+    }
+
+    return new StaticNameResolver(args.getOffloadExecutor());
+  }
+
+  @Override
+  public String getDefaultScheme() {
+    return SCHEME;
+  }
+
+  private static int parsePort(String address) {
+    int separator = address.lastIndexOf(':');
+
+    try {
+      if (separator > 0) {
+        return Integer.parseInt(address.substring(separator + 1));
+      }
+    } catch (NumberFormatException e) {
+      // Reported below.
+    }
+
+    throw new IllegalArgumentException("Invalid address, expected host:port: " + address);
+  }
+
+  private class StaticNameResolver extends NameResolver {
+    private final Executor executor;
+    private Listener2 listener;
+
+    StaticNameResolver(Executor executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public String getServiceAuthority() {
+      return authority;
+    }
+
+    @Override
+    public void start(Listener2 listener) {
+      this.listener = listener;
+
+      refresh();
+    }
+
+    @Override
+    public void refresh() {
+      final Listener2 listener = this.listener;
+      Runnable resolve = () -> {
+        List<EquivalentAddressGroup> groups = new ArrayList<>(addresses.size());
+
+        for (String address : addresses) {
+          int separator = address.lastIndexOf(':');
+          String host = address.substring(0, separator);
+
+          if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+          }
+
+          // Resolves the host name, which is why this runs on the offload executor.
+          InetSocketAddress socketAddress = new InetSocketAddress(host, parsePort(address));
+
+          if (!socketAddress.isUnresolved()) {
+            groups.add(new EquivalentAddressGroup(socketAddress));
+          }
+        }
+
+        if (groups.isEmpty()) {
+          listener.onError(Status.UNAVAILABLE.withDescription("None of the addresses could be resolved: " + addresses));
+        } else {
+          listener.onResult(ResolutionResult.newBuilder().setAddresses(groups).build());
+        }
+      };
+
+      if (executor != null) {
+        executor.execute(resolve);
+      } else {
+        resolve.run();
+      }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}
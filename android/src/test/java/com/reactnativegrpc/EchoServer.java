@@ -0,0 +1,235 @@
+package com.reactnativegrpc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.Attributes;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServerTransportFilter;
+import io.grpc.Status;
+import io.grpc.okhttp.OkHttpServerBuilder;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * A loopback server that echoes requests. Calls with an {@code x-fail} header fail with that
+ * status code, and server streaming calls send the request back {@code x-count} times, or fail
+ * with {@code ABORTED} after {@code x-fail-after} messages. Unary responses can be held back to
+ * keep calls in flight.
+ */
+final class EchoServer implements Closeable {
+  static final String UNARY = "test.Echo/Unary";
+  static final String STREAM = "test.Echo/Stream";
+  static final String BIDI = "test.Echo/Bidi";
+
+  static final Metadata.Key<String> FAIL = Metadata.Key.of("x-fail", Metadata.ASCII_STRING_MARSHALLER);
+  static final Metadata.Key<String> COUNT = Metadata.Key.of("x-count", Metadata.ASCII_STRING_MARSHALLER);
+  static final Metadata.Key<String> FAIL_AFTER = Metadata.Key.of("x-fail-after", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final Server server;
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger connections = new AtomicInteger();
+  private final List<Metadata> headers = new ArrayList<>();
+  private volatile CountDownLatch gate;
+
+  private EchoServer(int port) throws IOException {
+    ServerServiceDefinition service = ServerServiceDefinition.builder("test.Echo")
+      .addMethod(method(UNARY, MethodDescriptor.MethodType.UNARY), ServerCalls.asyncUnaryCall((request, responses) -> {
+        awaitGate();
+        responses.onNext(request);
+        responses.onCompleted();
+      }))
+      .addMethod(method(STREAM, MethodDescriptor.MethodType.SERVER_STREAMING), new ServerCallHandler<byte[], byte[]>() {
+        @Override
+        public ServerCall.Listener<byte[]> startCall(ServerCall<byte[], byte[]> call, Metadata headers) {
+          String count = headers.get(COUNT);
+          String failAfter = headers.get(FAIL_AFTER);
+          int messages = count != null ? Integer.parseInt(count) : 1;
+          int failAt = failAfter != null ? Integer.parseInt(failAfter) : -1;
+
+          return ServerCalls.<byte[], byte[]>asyncServerStreamingCall((request, responses) -> {
+            for (int i = 0; i < messages; i++) {
+              if (i == failAt) {
+                responses.onError(Status.ABORTED.asRuntimeException());
+
+                return;
+              }
+
+              responses.onNext(request);
+            }
+
+            responses.onCompleted();
+          }).startCall(call, headers);
+        }
+      })
+      .addMethod(method(BIDI, MethodDescriptor.MethodType.BIDI_STREAMING), ServerCalls.asyncBidiStreamingCall((responses) -> new StreamObserver<byte[]>() {
+        @Override
+        public void onNext(byte[] request) {
+          responses.onNext(request);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+          responses.onCompleted();
+        }
+      }))
+      .build();
+
+    ServerInterceptor interceptor = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata requestHeaders, ServerCallHandler<ReqT, RespT> next) {
+        calls.incrementAndGet();
+
+        synchronized (headers) {
+          headers.add(requestHeaders);
+        }
+
+        String failure = requestHeaders.get(FAIL);
+
+        if (failure != null) {
+          awaitGate();
+          call.close(Status.fromCode(Status.Code.valueOf(failure)), new Metadata());
+
+          return new ServerCall.Listener<ReqT>() {
+          };
+        }
+
+        return next.startCall(call, requestHeaders);
+      }
+    };
+
+    server = OkHttpServerBuilder.forPort(port, InsecureServerCredentials.create())
+      .addService(ServerInterceptors.intercept(service, interceptor))
+      .addTransportFilter(new ServerTransportFilter() {
+        @Override
+        public Attributes transportReady(Attributes attributes) {
+          connections.incrementAndGet();
+
+          return attributes;
+        }
+      })
+      .build()
+      .start();
+  }
+
+  static EchoServer start() throws IOException {
+    return new EchoServer(0);
+  }
+
+  /**
+   * Starts a server on a given port, e.g. to bring back one that was stopped.
+   */
+  static EchoServer start(int port) throws IOException {
+    return new EchoServer(port);
+  }
+
+  static MethodDescriptor<byte[], byte[]> method(String path, MethodDescriptor.MethodType type) {
+    return MethodDescriptor.<byte[], byte[]>newBuilder()
+      .setFullMethodName(path)
+      .setType(type)
+      .setRequestMarshaller(GrpcMarshaller.INSTANCE)
+      .setResponseMarshaller(GrpcMarshaller.INSTANCE)
+      .build();
+  }
+
+  /**
+   * Holds back unary responses and failures until {@link #release()} is called.
+   */
+  void hold() {
+    gate = new CountDownLatch(1);
+  }
+
+  void release() {
+    CountDownLatch gate = this.gate;
+
+    this.gate = null;
+
+    if (gate != null) {
+      gate.countDown();
+    }
+  }
+
+  private void awaitGate() {
+    CountDownLatch gate = this.gate;
+
+    if (gate != null) {
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Waits until the server has received the given number of calls.
+   */
+  void awaitCalls(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+
+    while (calls.get() < count) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new AssertionError("Received " + calls.get() + " of " + count + " calls");
+      }
+
+      Thread.sleep(5);
+    }
+  }
+
+  int getPort() {
+    return server.getPort();
+  }
+
+  String getAddress() {
+    return "localhost:" + server.getPort();
+  }
+
+  int getCalls() {
+    return calls.get();
+  }
+
+  /**
+   * The number of connections accepted so far, one per client channel.
+   */
+  int getConnections() {
+    return connections.get();
+  }
+
+  /**
+   * The request headers of every call received so far, in order.
+   */
+  List<Metadata> getHeaders() {
+    synchronized (headers) {
+      return new ArrayList<>(headers);
+    }
+  }
+
+  @Override
+  public void close() {
+    release();
+    server.shutdownNow();
+
+    try {
+      server.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
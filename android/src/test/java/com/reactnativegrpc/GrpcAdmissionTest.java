@@ -0,0 +1,241 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcAdmissionTest {
+  private static final int CLIENT_ID = 1;
+  private static final Metadata.Key<String> ID = Metadata.Key.of("x-id", Metadata.ASCII_STRING_MARSHALLER);
+
+  private EchoServer server;
+  private TestEvents events;
+  private GrpcModule module;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Test
+  public void limitsTheCallsInFlight() throws Exception {
+    connect(JavaOnlyMap.of("maxConcurrentCalls", 2));
+    server.hold();
+
+    for (int callId = 1; callId <= 5; callId++) {
+      call(callId, null);
+    }
+
+    server.awaitCalls(2);
+    Thread.sleep(100);
+
+    assertEquals(2, server.getCalls());
+
+    server.release();
+
+    for (int callId = 1; callId <= 5; callId++) {
+      assertEquals(Status.Code.OK.value(), events.awaitClose(callId).getInt("code"));
+    }
+
+    assertEquals(5, server.getCalls());
+  }
+
+  @Test
+  public void startsQueuedCallsByPriorityThenArrival() throws Exception {
+    connect(JavaOnlyMap.of("maxConcurrentCalls", 1));
+    server.hold();
+
+    call(1, null);
+    server.awaitCalls(1);
+
+    call(2, "low");
+    call(3, "normal");
+    call(4, "high");
+    call(5, "normal");
+
+    server.release();
+
+    for (int callId = 1; callId <= 5; callId++) {
+      events.awaitClose(callId);
+    }
+
+    assertEquals(Arrays.asList("1", "4", "3", "5", "2"), receivedIds());
+  }
+
+  @Test
+  public void rejectsOrDisplacesCallsWhenTheQueueIsFull() throws Exception {
+    connect(JavaOnlyMap.of("maxConcurrentCalls", 1, "maxQueuedCalls", 1));
+    server.hold();
+
+    call(1, null);
+    server.awaitCalls(1);
+
+    call(2, "normal");
+    call(3, "normal");
+
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED.value(), events.awaitClose(3).getInt("code"));
+
+    call(4, "high");
+
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED.value(), events.awaitClose(2).getInt("code"));
+
+    server.release();
+
+    assertEquals(Status.Code.OK.value(), events.awaitClose(1).getInt("code"));
+    assertEquals(Status.Code.OK.value(), events.awaitClose(4).getInt("code"));
+    assertEquals(Arrays.asList("1", "4"), receivedIds());
+  }
+
+  @Test
+  public void cancelledQueuedCallsNeverStart() throws Exception {
+    connect(JavaOnlyMap.of("maxConcurrentCalls", 1));
+    server.hold();
+
+    call(1, null);
+    server.awaitCalls(1);
+    call(2, null);
+
+    module.cancelGrpcCall(2, mock(Promise.class));
+
+    assertEquals(Status.Code.CANCELLED.value(), events.awaitClose(2).getInt("code"));
+
+    server.release();
+
+    assertEquals(Status.Code.OK.value(), events.awaitClose(1).getInt("code"));
+    assertEquals(Arrays.asList("1"), receivedIds());
+    assertEquals(1, events.getEvents(2).size());
+  }
+
+  @Test
+  public void queuedCallsFailOnceTheirDeadlinePasses() throws Exception {
+    connect(JavaOnlyMap.of("maxConcurrentCalls", 1));
+    server.hold();
+
+    call(1, null);
+    server.awaitCalls(1);
+
+    // Only calls started from now on have a deadline.
+    connect(JavaOnlyMap.of("maxConcurrentCalls", 1, "requestTimeout", 200));
+    call(2, null);
+
+    ReadableMap close = events.awaitClose(2);
+
+    assertEquals(Status.Code.DEADLINE_EXCEEDED.value(), close.getInt("code"));
+    assertTrue(close.getString("error"), close.getString("error").contains("queued"));
+
+    server.release();
+
+    assertEquals(Status.Code.OK.value(), events.awaitClose(1).getInt("code"));
+    assertEquals(1, server.getCalls());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void releasesTheSlotOfACallThatFailsToStart() {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    GrpcAdmission admission = GrpcAdmission.create(JavaOnlyMap.of("maxConcurrentCalls", 1), scheduler);
+    List<ClientCall.Listener<byte[]>> started = new ArrayList<>();
+    GrpcAdmission.Starter starter = started::add;
+    GrpcAdmission.Starter failing = (listener) -> {
+      throw new IllegalStateException("Failed");
+    };
+
+    try {
+      ClientCall.Listener<byte[]> first = mock(ClientCall.Listener.class);
+
+      // Started right away.
+      admission.submit(newCall(), GrpcAdmission.PRIORITY_NORMAL, null, first, failing);
+
+      assertClosedWith(first, Status.Code.INTERNAL);
+
+      admission.submit(newCall(), GrpcAdmission.PRIORITY_NORMAL, null, mock(ClientCall.Listener.class), starter);
+
+      assertEquals(1, started.size());
+
+      // Started from the queue once the running call closes.
+      ClientCall.Listener<byte[]> queued = mock(ClientCall.Listener.class);
+
+      admission.submit(newCall(), GrpcAdmission.PRIORITY_NORMAL, null, queued, failing);
+      admission.submit(newCall(), GrpcAdmission.PRIORITY_NORMAL, null, mock(ClientCall.Listener.class), starter);
+      started.get(0).onClose(Status.OK, new Metadata());
+
+      assertClosedWith(queued, Status.Code.INTERNAL);
+      assertEquals(2, started.size());
+    } finally {
+      admission.close();
+      scheduler.shutdownNow();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static GrpcCall newCall() {
+    return new GrpcCall(mock(ClientCall.class), mock(GrpcEventDispatcher.class));
+  }
+
+  private static void assertClosedWith(ClientCall.Listener<byte[]> listener, Status.Code code) {
+    ArgumentCaptor<Status> status = ArgumentCaptor.forClass(Status.class);
+
+    verify(listener).onClose(status.capture(), any(Metadata.class));
+    assertEquals(code, status.getValue().getCode());
+  }
+
+  private void connect(JavaOnlyMap settings) {
+    settings.putString("host", server.getAddress());
+    settings.putBoolean("insecure", true);
+
+    module.setGrpcSettings(CLIENT_ID, settings, mock(Promise.class));
+  }
+
+  private void call(int callId, String priority) {
+    JavaOnlyMap request = JavaOnlyMap.of("data", GrpcPayloadCodec.encode(new byte[] {(byte) callId}));
+
+    if (priority != null) {
+      request.putMap("options", JavaOnlyMap.of("priority", priority));
+    }
+
+    module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request, JavaOnlyMap.of("x-id", String.valueOf(callId)), mock(Promise.class));
+  }
+
+  private List<String> receivedIds() {
+    List<String> ids = new ArrayList<>();
+
+    for (Metadata headers : server.getHeaders()) {
+      ids.add(headers.get(ID));
+    }
+
+    return ids;
+  }
+}
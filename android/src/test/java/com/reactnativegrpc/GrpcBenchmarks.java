@@ -0,0 +1,53 @@
+package com.reactnativegrpc;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Runs the JMH benchmarks inside the Robolectric sandbox, where the module's Android and React
+ * Native classes work, so they can't be forked into a separate JVM. The GC profiler reports the
+ * bytes allocated per operation. Gradle only runs this class with {@code -Pbenchmark}, and
+ * {@code -Pbenchmark=quick} shortens the runs to a smoke test.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GrpcBenchmarks {
+  @Test
+  public void payloadCodec() throws RunnerException {
+    run(GrpcPayloadCodecBenchmark.class);
+  }
+
+  @Test
+  public void callSetup() throws RunnerException {
+    run(GrpcCallSetupBenchmark.class);
+  }
+
+  @Test
+  public void module() throws RunnerException {
+    run(GrpcModuleBenchmark.class);
+  }
+
+  private static void run(Class<?> benchmark) throws RunnerException {
+    ChainedOptionsBuilder options = new OptionsBuilder()
+      .include(benchmark.getName())
+      .forks(0)
+      .shouldFailOnError(true)
+      .addProfiler(GCProfiler.class);
+
+    if (Boolean.getBoolean("benchmark.quick")) {
+      options
+        .warmupIterations(1)
+        .warmupTime(TimeValue.milliseconds(200))
+        .measurementIterations(1)
+        .measurementTime(TimeValue.milliseconds(200));
+    }
+
+    new Runner(options.build()).run();
+  }
+}
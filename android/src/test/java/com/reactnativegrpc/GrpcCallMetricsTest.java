@@ -0,0 +1,149 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcCallMetricsTest {
+  private static final int CLIENT_ID = 1;
+
+  private EchoServer server;
+  private TestEvents events;
+  private GrpcModule module;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true, "metrics", true), mock(Promise.class));
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Test
+  public void countsCallsStatusCodesAndBytes() throws Exception {
+    String data = GrpcPayloadCodec.encode(new byte[100]);
+
+    for (int id = 1; id <= 2; id++) {
+      module.unaryCall(id, CLIENT_ID, EchoServer.UNARY, JavaOnlyMap.of("data", data), new JavaOnlyMap(), mock(Promise.class));
+      events.awaitClose(id);
+    }
+
+    ReadableMap metrics = getMethodMetrics();
+
+    assertEquals(2, metrics.getDouble("calls"), 0);
+    assertEquals(0, metrics.getDouble("inFlight"), 0);
+    assertEquals(2, metrics.getDouble("sentMessages"), 0);
+    assertEquals(2, metrics.getDouble("receivedMessages"), 0);
+    assertEquals(200, metrics.getDouble("sentBytes"), 0);
+    assertEquals(200, metrics.getDouble("receivedBytes"), 0);
+    // Uncompressed, so the wire carries the same bytes.
+    assertEquals(200, metrics.getDouble("sentWireBytes"), 0);
+    assertEquals(200, metrics.getDouble("receivedWireBytes"), 0);
+
+    module.unaryCall(3, CLIENT_ID, EchoServer.UNARY, JavaOnlyMap.of("data", data), JavaOnlyMap.of("x-fail", "INVALID_ARGUMENT"), mock(Promise.class));
+    events.awaitClose(3);
+
+    metrics = getMethodMetrics();
+
+    ReadableMap statusCodes = metrics.getMap("statusCodes");
+    ReadableArray counts = metrics.getArray("latencyCounts");
+    double total = 0;
+
+    for (int i = 0; i < counts.size(); i++) {
+      total += counts.getDouble(i);
+    }
+
+    assertEquals(3, metrics.getDouble("calls"), 0);
+    assertEquals(2, statusCodes.getDouble("OK"), 0);
+    assertEquals(1, statusCodes.getDouble("INVALID_ARGUMENT"), 0);
+    assertEquals(3, total, 0);
+  }
+
+  @Test
+  public void percentilesAreBucketBoundsCappedByTheMaximum() {
+    GrpcCallMetrics.MethodStats stats = new GrpcCallMetrics.MethodStats();
+
+    record(stats, 0.5);
+    record(stats, 3);
+    record(stats, 7);
+
+    ReadableMap metrics = stats.getMetrics();
+
+    // The rank is rounded up: the 50th percentile of 3 calls is the second one, in the 5ms bucket.
+    assertEquals(5, metrics.getDouble("p50Latency"), 0);
+    // The third call is in the 10ms bucket, but no call took longer than 7ms.
+    assertEquals(7, metrics.getDouble("p90Latency"), 0);
+    assertEquals(7, metrics.getDouble("p99Latency"), 0);
+    assertEquals(7, metrics.getDouble("maxLatency"), 0);
+  }
+
+  @Test
+  public void percentilesInTheOverflowBucketAreTheMaximum() {
+    GrpcCallMetrics.MethodStats stats = new GrpcCallMetrics.MethodStats();
+
+    // A bucket's bound is inclusive.
+    for (int i = 0; i < 98; i++) {
+      record(stats, 1);
+    }
+
+    record(stats, 12_000);
+    record(stats, 20_000);
+
+    ReadableMap metrics = stats.getMetrics();
+    ReadableArray counts = metrics.getArray("latencyCounts");
+
+    assertEquals(98, counts.getDouble(0), 0);
+    assertEquals(2, counts.getDouble(counts.size() - 1), 0);
+    assertEquals(1, metrics.getDouble("p50Latency"), 0);
+    // Rank 98 of 100 is still in the first bucket, rank 99 is not.
+    assertEquals(1, metrics.getDouble("p90Latency"), 0);
+    assertEquals(20_000, metrics.getDouble("p99Latency"), 0);
+  }
+
+  @Test
+  public void percentilesOfNoCallsAreZero() {
+    ReadableMap metrics = new GrpcCallMetrics.MethodStats().getMetrics();
+
+    assertEquals(0, metrics.getDouble("calls"), 0);
+    assertEquals(0, metrics.getDouble("p50Latency"), 0);
+    assertEquals(0, metrics.getDouble("p99Latency"), 0);
+  }
+
+  private static void record(GrpcCallMetrics.MethodStats stats, double millis) {
+    stats.recordCall(Status.OK, (long) (millis * TimeUnit.MILLISECONDS.toNanos(1)), -1);
+  }
+
+  private ReadableMap getMethodMetrics() {
+    Promise promise = mock(Promise.class);
+    ArgumentCaptor<ReadableMap> metrics = ArgumentCaptor.forClass(ReadableMap.class);
+
+    module.getMetrics(CLIENT_ID, promise);
+    verify(promise).resolve(metrics.capture());
+
+    return metrics.getValue().getMap("methods").getMap(EchoServer.UNARY);
+  }
+}
@@ -0,0 +1,96 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+
+/**
+ * Compares what starting a call allocates with the cached method descriptors and call options of
+ * a connection against building them for every call, as the module used to. The GC profiler
+ * reports the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GrpcCallSetupBenchmark {
+  private static final String PATH = "/test.Echo/Unary";
+
+  private ReadableMap settings;
+  private ScheduledExecutorService scheduler;
+  private GrpcExecutor sharedExecutor;
+  private ManagedChannel channel;
+  private GrpcConnection connection;
+
+  @Setup
+  public void setUp() {
+    settings = JavaOnlyMap.of("host", "localhost:1", "insecure", true, "requestTimeout", 10_000, "compressionName", "gzip");
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    sharedExecutor = GrpcExecutor.createShared();
+
+    GrpcExecutor executor = GrpcExecutor.create(settings, sharedExecutor);
+    GrpcEventDispatcher eventDispatcher = new GrpcEventDispatcher((eventName, params) -> {
+    }, scheduler, 1, settings);
+
+    // Never connects, only calls are set up.
+    channel = OkHttpChannelBuilder.forTarget("localhost:1").usePlaintext().build();
+    connection = new GrpcConnection(channel, settings, eventDispatcher, executor, new GrpcCompression(settings), null, null, null);
+  }
+
+  @TearDown
+  public void tearDown() {
+    channel.shutdownNow();
+    scheduler.shutdownNow();
+    sharedExecutor.shutdown();
+  }
+
+  @Benchmark
+  public void cached(Blackhole blackhole) {
+    blackhole.consume(connection.getMethodDescriptor(PATH, MethodDescriptor.MethodType.UNARY));
+    blackhole.consume(connection.getCallOptions());
+  }
+
+  @Benchmark
+  public void perCall(Blackhole blackhole) {
+    MethodDescriptor<byte[], byte[]> descriptor = MethodDescriptor.<byte[], byte[]>newBuilder()
+      .setFullMethodName(PATH.substring(1))
+      .setType(MethodDescriptor.MethodType.UNARY)
+      .setRequestMarshaller(new GrpcMarshaller())
+      .setResponseMarshaller(new GrpcMarshaller())
+      .build();
+
+    CallOptions callOptions = CallOptions.DEFAULT;
+
+    if (settings.hasKey("requestTimeout")) {
+      callOptions = callOptions.withDeadlineAfter(settings.getInt("requestTimeout"), TimeUnit.MILLISECONDS);
+    }
+
+    if (settings.hasKey("compressionName")) {
+      callOptions = callOptions.withCompression(settings.getString("compressionName"));
+    }
+
+    blackhole.consume(descriptor);
+    blackhole.consume(callOptions);
+  }
+}
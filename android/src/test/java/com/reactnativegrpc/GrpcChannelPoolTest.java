@@ -0,0 +1,192 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcChannelPoolTest {
+  private static final int CLIENT_ID = 1;
+
+  private EchoServer server;
+  private TestEvents events;
+  private GrpcModule module;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Test
+  public void spreadsUnaryCallsOverEveryChannel() throws Exception {
+    setPool(3, 0);
+    server.hold();
+
+    for (int id = 1; id <= 6; id++) {
+      startUnary(id);
+    }
+
+    server.awaitCalls(6);
+
+    ReadableArray channels = getChannels();
+
+    assertEquals(3, channels.size());
+
+    for (int i = 0; i < channels.size(); i++) {
+      assertEquals("shared", channels.getMap(i).getString("lane"));
+      assertEquals(2, channels.getMap(i).getInt("activeCalls"));
+    }
+
+    assertEquals(3, server.getConnections());
+
+    server.release();
+
+    for (int id = 1; id <= 6; id++) {
+      assertEquals(Status.Code.OK.value(), events.awaitClose(id).getInt("code"));
+    }
+  }
+
+  @Test
+  public void keepsStreamingCallsOnTheStreamingChannels() throws Exception {
+    setPool(3, 1);
+    server.hold();
+
+    for (int id = 1; id <= 3; id++) {
+      module.bidiStreamingCall(id, CLIENT_ID, EchoServer.BIDI, new JavaOnlyMap(), new JavaOnlyMap(), mock(Promise.class));
+    }
+
+    for (int id = 4; id <= 7; id++) {
+      startUnary(id);
+    }
+
+    server.awaitCalls(7);
+
+    ReadableArray channels = getChannels();
+
+    assertEquals("streaming", channels.getMap(0).getString("lane"));
+    assertEquals(3, channels.getMap(0).getInt("activeCalls"));
+
+    for (int i = 1; i < channels.size(); i++) {
+      assertEquals("unary", channels.getMap(i).getString("lane"));
+      assertEquals(2, channels.getMap(i).getInt("activeCalls"));
+    }
+
+    server.release();
+
+    for (int id = 1; id <= 3; id++) {
+      module.finishClientStreaming(id, mock(Promise.class));
+    }
+
+    for (int id = 1; id <= 7; id++) {
+      assertEquals(Status.Code.OK.value(), events.awaitClose(id).getInt("code"));
+    }
+  }
+
+  @Test
+  public void isReadyOnceAnyChannelIsReady() throws Exception {
+    List<ManagedChannel> created = new ArrayList<>();
+    ManagedChannel pool = GrpcChannelPool.create(JavaOnlyMap.of("channelPool", JavaOnlyMap.of("size", 2)), () -> {
+      // Only the second channel has a server to connect to.
+      String target = created.isEmpty() ? "localhost:1" : server.getAddress();
+      ManagedChannel channel = OkHttpChannelBuilder.forTarget(target).usePlaintext().build();
+
+      created.add(channel);
+
+      return channel;
+    });
+
+    try {
+      awaitState(pool, ConnectivityState.READY);
+
+      assertNotEquals(ConnectivityState.READY, created.get(0).getState(false));
+      assertEquals(ConnectivityState.READY, created.get(1).getState(false));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void connectResolvesOnceThePoolIsReady() {
+    Promise promise = mock(Promise.class);
+
+    setPool(3, 1);
+    module.connect(CLIENT_ID, 5_000, promise);
+
+    verify(promise, timeout(5_000)).resolve(null);
+  }
+
+  private void setPool(int size, int streamingChannels) {
+    JavaOnlyMap pool = JavaOnlyMap.of("size", size, "streamingChannels", streamingChannels);
+
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true, "channelPool", pool), mock(Promise.class));
+  }
+
+  private void startUnary(int callId) {
+    JavaOnlyMap request = JavaOnlyMap.of("data", GrpcPayloadCodec.encode(new byte[] {(byte) callId}));
+
+    module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request, new JavaOnlyMap(), mock(Promise.class));
+  }
+
+  private ReadableArray getChannels() {
+    Promise promise = mock(Promise.class);
+    ArgumentCaptor<ReadableMap> metrics = ArgumentCaptor.forClass(ReadableMap.class);
+
+    module.getMetrics(CLIENT_ID, promise);
+    verify(promise).resolve(metrics.capture());
+
+    return metrics.getValue().getArray("channels");
+  }
+
+  /**
+   * Waits for a state through the pool's own change notifications.
+   */
+  private static void awaitState(ManagedChannel channel, ConnectivityState expected) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    ConnectivityState state = channel.getState(true);
+
+    while (state != expected) {
+      CountDownLatch changed = new CountDownLatch(1);
+
+      channel.notifyWhenStateChanged(state, changed::countDown);
+
+      if (!changed.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        throw new AssertionError("Still " + state + " instead of " + expected);
+      }
+
+      state = channel.getState(true);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.reactnativegrpc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.ManagedChannel;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcConnectionTest {
+  private EchoServer server;
+  private ScheduledExecutorService scheduler;
+  private GrpcExecutor sharedExecutor;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    sharedExecutor = GrpcExecutor.createShared();
+  }
+
+  @After
+  public void tearDown() {
+    if (channel != null) {
+      channel.shutdownNow();
+    }
+
+    scheduler.shutdownNow();
+    sharedExecutor.shutdown();
+    server.close();
+  }
+
+  @Test
+  public void cancelsTheTimeoutOnceTheChannelIsReady() {
+    ScheduledExecutorService timeouts = mock(ScheduledExecutorService.class);
+    ScheduledFuture<?> timer = mock(ScheduledFuture.class);
+    Promise promise = mock(Promise.class);
+
+    doReturn(timer).when(timeouts).schedule(any(Runnable.class), eq(5_000L), eq(TimeUnit.MILLISECONDS));
+
+    connection(server.getAddress()).connect(5_000, timeouts, promise);
+
+    verify(promise, timeout(5_000)).resolve(null);
+    verify(timer).cancel(false);
+  }
+
+  @Test
+  public void cancelsTheTimeoutOnceTheChannelIsShutDown() {
+    ScheduledExecutorService timeouts = mock(ScheduledExecutorService.class);
+    ScheduledFuture<?> timer = mock(ScheduledFuture.class);
+    Promise promise = mock(Promise.class);
+
+    doReturn(timer).when(timeouts).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+
+    // Nothing listens on port 1.
+    connection("localhost:1").connect(5_000, timeouts, promise);
+    channel.shutdownNow();
+
+    verify(promise, timeout(5_000)).reject(any(Exception.class));
+    verify(timer).cancel(false);
+  }
+
+  @Test
+  public void rejectsOnceTheTimeoutIsOver() {
+    Promise promise = mock(Promise.class);
+
+    connection("localhost:1").connect(100, scheduler, promise);
+
+    verify(promise, timeout(5_000)).reject(any(Exception.class));
+    verify(promise, never()).resolve(any());
+  }
+
+  private GrpcConnection connection(String host) {
+    ReadableMap settings = JavaOnlyMap.of("host", host, "insecure", true);
+    GrpcEventDispatcher eventDispatcher = new GrpcEventDispatcher((eventName, params) -> {
+    }, scheduler, 1, settings);
+
+    channel = OkHttpChannelBuilder.forTarget(host).usePlaintext().build();
+
+    return new GrpcConnection(channel, settings, eventDispatcher, GrpcExecutor.create(settings, sharedExecutor), new GrpcCompression(settings), null, null, null);
+  }
+}
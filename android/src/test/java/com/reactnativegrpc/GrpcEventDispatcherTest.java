@@ -0,0 +1,164 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import io.grpc.ConnectivityState;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcEventDispatcherTest {
+  private static final int CLIENT_ID = 7;
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final TestEvents events = new TestEvents();
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void sendsEventsOneByOneWithoutBatching() {
+    GrpcEventDispatcher dispatcher = new GrpcEventDispatcher(events, scheduler, CLIENT_ID, new JavaOnlyMap());
+
+    dispatcher.emitReady(1);
+    dispatcher.emitResponse(1, "AAAA");
+
+    assertEquals(2, events.getCallEventCount());
+    assertEquals(0, events.getBatchCount());
+
+    List<ReadableMap> sent = events.getEvents(1);
+
+    assertEquals("ready", sent.get(0).getString("type"));
+    assertEquals("AAAA", sent.get(1).getString("payload"));
+    assertEquals(CLIENT_ID, sent.get(1).getInt("clientId"));
+  }
+
+  @Test
+  public void flushesWhenTheBatchIsFull() {
+    GrpcEventDispatcher dispatcher = batching(3, 60_000);
+
+    dispatcher.emitReady(1);
+    dispatcher.emitResponse(1, "AAAA");
+
+    assertEquals(0, events.getCallEventCount());
+
+    dispatcher.emitResponse(1, "BBBB");
+
+    assertEquals(1, events.getBatchCount());
+
+    List<ReadableMap> sent = events.getEvents(1);
+
+    assertEquals(3, sent.size());
+    assertEquals("ready", sent.get(0).getString("type"));
+    assertEquals("AAAA", sent.get(1).getString("payload"));
+    assertEquals("BBBB", sent.get(2).getString("payload"));
+  }
+
+  @Test
+  public void flushesAfterTheMaximumDelay() throws InterruptedException {
+    GrpcEventDispatcher dispatcher = batching(100, 20);
+
+    dispatcher.emitReady(1);
+    dispatcher.emitReady(2);
+
+    assertEquals(0, events.getCallEventCount());
+
+    long deadline = System.currentTimeMillis() + 5_000;
+
+    while (events.getBatchCount() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+
+    assertEquals(1, events.getBatchCount());
+    assertEquals(2, events.getCallEventCount());
+  }
+
+  @Test
+  public void flushSendsPendingEventsOnce() throws InterruptedException {
+    GrpcEventDispatcher dispatcher = batching(100, 20);
+
+    dispatcher.flush();
+    dispatcher.emitReady(1);
+    dispatcher.flush();
+
+    assertEquals(1, events.getBatchCount());
+
+    // The scheduled flush was cancelled and there is nothing left to send.
+    Thread.sleep(100);
+    dispatcher.flush();
+
+    assertEquals(1, events.getBatchCount());
+    assertEquals(1, events.getCallEventCount());
+  }
+
+  @Test
+  public void flushesRightAwayOnceTheSchedulerIsShutDown() {
+    GrpcEventDispatcher dispatcher = batching(100, 60_000);
+
+    scheduler.shutdown();
+    dispatcher.emitReady(1);
+
+    assertEquals(1, events.getBatchCount());
+  }
+
+  @Test
+  public void reportsBatchMetrics() {
+    GrpcEventDispatcher dispatcher = batching(2, 60_000);
+
+    dispatcher.emitReady(1);
+    dispatcher.emitReady(2);
+    dispatcher.emitReady(3);
+    dispatcher.flush();
+
+    ReadableMap metrics = dispatcher.getMetrics();
+
+    assertTrue(metrics.getBoolean("batching"));
+    assertEquals(2, metrics.getDouble("batches"), 0);
+    assertEquals(3, metrics.getDouble("batchedEvents"), 0);
+    assertEquals(2, metrics.getInt("largestBatch"));
+    assertEquals(1.5, metrics.getDouble("averageBatchSize"), 0);
+  }
+
+  @Test
+  public void sendsConnectivityEventsWithoutBatching() {
+    GrpcEventDispatcher dispatcher = batching(100, 60_000);
+
+    dispatcher.emitConnectivityState(ConnectivityState.READY);
+
+    List<ReadableMap> other = events.getOtherEvents();
+
+    assertEquals(1, other.size());
+    assertEquals("READY", other.get(0).getString("state"));
+    assertFalse(other.get(0).hasKey("events"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAnEmptyBatchSize() {
+    batching(0, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsANegativeDelay() {
+    batching(10, -1);
+  }
+
+  private GrpcEventDispatcher batching(int maxSize, int maxDelay) {
+    JavaOnlyMap settings = JavaOnlyMap.of("eventBatching", JavaOnlyMap.of("maxSize", maxSize, "maxDelay", maxDelay));
+
+    return new GrpcEventDispatcher(events, scheduler, CLIENT_ID, settings);
+  }
+}
@@ -0,0 +1,213 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcFileSinkTest {
+  private static final int CLIENT_ID = 1;
+  private static final byte[] MESSAGE = {1, 2, 3, 4, 5};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private EchoServer server;
+  private TestEvents events;
+  private GrpcModule module;
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true), mock(Promise.class));
+    file = new File(folder.getRoot(), "downloads/response.bin");
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Test
+  public void writesRawMessagesToTheFile() throws Exception {
+    ReadableMap close = download(1, MESSAGE, JavaOnlyMap.of("path", file.getPath()), 3, null);
+
+    assertEquals(Status.Code.OK.value(), close.getInt("code"));
+    assertArrayEquals(repeat(MESSAGE, 3), Files.readAllBytes(file.toPath()));
+    assertProgress(1, 3 * MESSAGE.length, 3);
+    // Messages go to the file, not to JS.
+    assertFalse(close.hasKey("payload"));
+  }
+
+  @Test
+  public void writesDelimitedMessagesThatProtobufCanReadBack() throws Exception {
+    // Longer than 127 bytes, so that the length takes two varint bytes.
+    byte[] value = new byte[300];
+
+    for (int i = 0; i < value.length; i++) {
+      value[i] = (byte) i;
+    }
+
+    byte[] message = BytesValue.newBuilder().setValue(ByteString.copyFrom(value)).build().toByteArray();
+    ReadableMap close = download(1, message, JavaOnlyMap.of("path", file.getPath(), "format", "delimited"), 3, null);
+
+    assertEquals(Status.Code.OK.value(), close.getInt("code"));
+
+    InputStream in = new FileInputStream(file);
+
+    try {
+      for (int i = 0; i < 3; i++) {
+        assertEquals(ByteString.copyFrom(value), BytesValue.parseDelimitedFrom(in).getValue());
+      }
+
+      assertNull(BytesValue.parseDelimitedFrom(in));
+    } finally {
+      in.close();
+    }
+
+    assertProgress(1, file.length(), 3);
+  }
+
+  @Test
+  public void resumesFromAnOffset() throws Exception {
+    byte[] partial = repeat(MESSAGE, 2);
+
+    file.getParentFile().mkdirs();
+    // Two whole messages followed by part of a third.
+    Files.write(file.toPath(), concat(partial, new byte[] {9, 9}));
+
+    JavaOnlyMap output = JavaOnlyMap.of("path", file.getPath(), "offset", (double) partial.length);
+    ReadableMap close = download(1, MESSAGE, output, 1, null);
+
+    assertEquals(Status.Code.OK.value(), close.getInt("code"));
+    assertArrayEquals(repeat(MESSAGE, 3), Files.readAllBytes(file.toPath()));
+    // The offset counts towards the bytes, the messages are those of this call.
+    assertProgress(1, 3 * MESSAGE.length, 1);
+  }
+
+  @Test
+  public void keepsTheWholeMessagesWhenTheServerFails() throws Exception {
+    ReadableMap close = download(1, MESSAGE, JavaOnlyMap.of("path", file.getPath()), 5, "2");
+
+    assertEquals(Status.Code.ABORTED.value(), close.getInt("code"));
+    assertEquals(2 * MESSAGE.length, file.length());
+    assertArrayEquals(repeat(MESSAGE, 2), Files.readAllBytes(file.toPath()));
+    // The last progress event carries the offset to resume from.
+    assertProgress(1, file.length(), 2);
+
+    JavaOnlyMap output = JavaOnlyMap.of("path", file.getPath(), "offset", (double) file.length());
+
+    assertEquals(Status.Code.OK.value(), download(2, MESSAGE, output, 3, null).getInt("code"));
+    assertArrayEquals(repeat(MESSAGE, 5), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void rejectsAnOffsetPastTheEndOfTheFile() throws Exception {
+    JavaOnlyMap output = JavaOnlyMap.of("path", file.getPath(), "offset", 10.0);
+    Promise promise = mock(Promise.class);
+
+    startDownload(1, MESSAGE, output, 1, null, promise);
+
+    verify(promise).reject(any(IllegalArgumentException.class));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void discardDeletesANewFileButKeepsOneBeingResumed() throws Exception {
+    GrpcFileSink.open(JavaOnlyMap.of("path", file.getPath())).discard();
+
+    assertFalse(file.exists());
+
+    Files.write(file.toPath(), MESSAGE);
+    GrpcFileSink.open(JavaOnlyMap.of("path", file.getPath(), "offset", 3.0)).discard();
+
+    assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(file.toPath()));
+  }
+
+  private ReadableMap download(int callId, byte[] message, JavaOnlyMap output, int count, String failAfter) throws InterruptedException {
+    startDownload(callId, message, output, count, failAfter, mock(Promise.class));
+
+    return events.awaitClose(callId);
+  }
+
+  private void startDownload(int callId, byte[] message, JavaOnlyMap output, int count, String failAfter, Promise promise) {
+    JavaOnlyMap request = JavaOnlyMap.of("data", GrpcPayloadCodec.encode(message), "output", output);
+    JavaOnlyMap headers = JavaOnlyMap.of("x-count", String.valueOf(count));
+
+    if (failAfter != null) {
+      headers.putString("x-fail-after", failAfter);
+    }
+
+    module.downloadCall(callId, CLIENT_ID, EchoServer.STREAM, request, headers, promise);
+  }
+
+  /**
+   * Checks the last progress event before the close event of a call.
+   */
+  private void assertProgress(int callId, long bytes, long messages) {
+    List<ReadableMap> callEvents = events.getEvents(callId);
+    ReadableMap progress = null;
+
+    for (ReadableMap event : callEvents) {
+      if ("progress".equals(event.getString("type"))) {
+        progress = event;
+      }
+    }
+
+    assertNotNull("progress event of call " + callId, progress);
+    assertEquals(bytes, (long) progress.getDouble("bytes"));
+    assertEquals(messages, (long) progress.getDouble("messages"));
+  }
+
+  private static byte[] repeat(byte[] data, int times) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    for (int i = 0; i < times; i++) {
+      out.write(data, 0, data.length);
+    }
+
+    return out.toByteArray();
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] out = new byte[a.length + b.length];
+
+    System.arraycopy(a, 0, out, 0, a.length);
+    System.arraycopy(b, 0, out, a.length, b.length);
+
+    return out;
+  }
+}
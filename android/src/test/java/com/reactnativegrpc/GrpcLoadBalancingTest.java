@@ -0,0 +1,157 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcLoadBalancingTest {
+  private static final int CLIENT_ID = 1;
+  private static final int SERVERS = 3;
+
+  private final List<EchoServer> servers = new ArrayList<>();
+  private TestEvents events;
+  private GrpcModule module;
+  private int nextCallId = 1;
+
+  @Before
+  public void setUp() throws Exception {
+    JavaOnlyArray addresses = new JavaOnlyArray();
+
+    for (int i = 0; i < SERVERS; i++) {
+      EchoServer server = EchoServer.start();
+
+      servers.add(server);
+      addresses.pushString(server.getAddress());
+    }
+
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", "echo.test", "insecure", true, "addresses", addresses, "loadBalancingPolicy", "round_robin"), mock(Promise.class));
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+
+    for (EchoServer server : servers) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void roundRobinSpreadsCallsOverEveryAddress() throws Exception {
+    for (int i = 0; i < 60; i++) {
+      assertEquals(Status.Code.OK.value(), call().getInt("code"));
+    }
+
+    int total = 0;
+
+    for (EchoServer server : servers) {
+      assertTrue("calls of " + server.getAddress(), server.getCalls() > 0);
+
+      total += server.getCalls();
+    }
+
+    assertEquals(60, total);
+  }
+
+  @Test
+  public void reportsCallsPerEndpoint() throws Exception {
+    for (int i = 0; i < 60; i++) {
+      call();
+    }
+
+    ReadableMap endpoints = getMetrics().getMap("endpoints");
+    ReadableMapKeySetIterator iterator = endpoints.keySetIterator();
+    int count = 0;
+    double calls = 0;
+
+    while (iterator.hasNextKey()) {
+      calls += endpoints.getMap(iterator.nextKey()).getDouble("calls");
+      count++;
+    }
+
+    assertEquals(SERVERS, count);
+    assertEquals(60, calls, 0);
+  }
+
+  @Test
+  public void skipsAnAddressThatGoesDown() throws Exception {
+    for (int i = 0; i < 30; i++) {
+      call();
+    }
+
+    EchoServer down = servers.get(1);
+    int callsBefore = down.getCalls();
+
+    down.close();
+    // Lets the channel notice that the connection is gone.
+    Thread.sleep(500);
+
+    for (int i = 0; i < 30; i++) {
+      assertEquals(Status.Code.OK.value(), call().getInt("code"));
+    }
+
+    assertEquals(callsBefore, down.getCalls());
+    assertEquals(60 - callsBefore, servers.get(0).getCalls() + servers.get(2).getCalls());
+  }
+
+  @Test
+  public void rejectsAnUnknownPolicy() {
+    Promise promise = mock(Promise.class);
+
+    module.setGrpcSettings(2, JavaOnlyMap.of("host", "echo.test", "loadBalancingPolicy", "no_such_policy"), promise);
+
+    verify(promise).reject(any(IllegalArgumentException.class));
+  }
+
+  @Test
+  public void rejectsAnEmptyAddressList() {
+    Promise promise = mock(Promise.class);
+
+    module.setGrpcSettings(2, JavaOnlyMap.of("host", "echo.test", "addresses", new JavaOnlyArray()), promise);
+
+    verify(promise).reject(any(IllegalArgumentException.class));
+  }
+
+  private ReadableMap call() throws InterruptedException {
+    int callId = nextCallId++;
+    JavaOnlyMap request = JavaOnlyMap.of("data", GrpcPayloadCodec.encode(new byte[] {(byte) callId}));
+
+    module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request, new JavaOnlyMap(), mock(Promise.class));
+
+    return events.awaitClose(callId);
+  }
+
+  private ReadableMap getMetrics() {
+    Promise promise = mock(Promise.class);
+    ArgumentCaptor<ReadableMap> metrics = ArgumentCaptor.forClass(ReadableMap.class);
+
+    module.getMetrics(CLIENT_ID, promise);
+    verify(promise).resolve(metrics.capture());
+
+    return metrics.getValue();
+  }
+}
@@ -0,0 +1,175 @@
+package com.reactnativegrpc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.Status;
+
+/**
+ * Drives the module the way JS does, through its bridge methods, against a loopback server, and
+ * waits for each call's close event. Reports unary calls per second alone and from 8 threads,
+ * the latency distribution of unary calls, and server streaming messages per second. The GC
+ * profiler reports the bytes allocated per call or message.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GrpcModuleBenchmark {
+  private static final int CLIENT_ID = 1;
+  private static final int STREAM_MESSAGES = 100;
+
+  @Param({"16", "1024", "65536"})
+  public int payloadSize;
+
+  private final AtomicInteger nextCallId = new AtomicInteger();
+  private final CloseEvents events = new CloseEvents();
+  // Only stubs, so that calls aren't recorded.
+  private final Promise promise = mock(Promise.class, withSettings().stubOnly());
+
+  private EchoServer server;
+  private GrpcModule module;
+  private JavaOnlyMap request;
+  private JavaOnlyMap streamHeaders;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    byte[] data = new byte[payloadSize];
+
+    new Random(42).nextBytes(data);
+
+    server = EchoServer.start();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true), mock(Promise.class));
+
+    request = JavaOnlyMap.of("data", GrpcPayloadCodec.encode(data));
+    streamHeaders = JavaOnlyMap.of("x-count", String.valueOf(STREAM_MESSAGES));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public ReadableMap unaryCalls() throws Exception {
+    return unary();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(8)
+  public ReadableMap concurrentUnaryCalls() throws Exception {
+    return unary();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public ReadableMap unaryLatency() throws Exception {
+    return unary();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(STREAM_MESSAGES)
+  public ReadableMap streamingMessages() throws Exception {
+    int callId = nextCallId.incrementAndGet();
+    CompletableFuture<ReadableMap> close = events.expect(callId);
+
+    module.serverStreamingCall(callId, CLIENT_ID, EchoServer.STREAM, request, streamHeaders, promise);
+
+    return await(callId, close);
+  }
+
+  private ReadableMap unary() throws Exception {
+    int callId = nextCallId.incrementAndGet();
+    CompletableFuture<ReadableMap> close = events.expect(callId);
+
+    module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request, new JavaOnlyMap(), promise);
+
+    return await(callId, close);
+  }
+
+  private ReadableMap await(int callId, CompletableFuture<ReadableMap> close) throws Exception {
+    ReadableMap event = close.get(10, TimeUnit.SECONDS);
+
+    if (event.getInt("code") != Status.Code.OK.value()) {
+      throw new IllegalStateException("Call " + callId + " failed: " + event.getString("error"));
+    }
+
+    return event;
+  }
+
+  /**
+   * Completes a future with the close event of each call, and drops every other event.
+   */
+  static final class CloseEvents implements GrpcEventSink {
+    private final ConcurrentHashMap<Integer, CompletableFuture<ReadableMap>> calls = new ConcurrentHashMap<>();
+
+    CompletableFuture<ReadableMap> expect(int callId) {
+      CompletableFuture<ReadableMap> close = new CompletableFuture<>();
+
+      calls.put(callId, close);
+
+      return close;
+    }
+
+    @Override
+    public void send(String eventName, Object params) {
+      if (GrpcEventDispatcher.CALL_EVENT.equals(eventName)) {
+        onEvent((ReadableMap) params);
+      } else if (GrpcEventDispatcher.CALL_BATCH_EVENT.equals(eventName)) {
+        ReadableArray events = ((ReadableMap) params).getArray("events");
+
+        for (int i = 0; i < events.size(); i++) {
+          onEvent(events.getMap(i));
+        }
+      }
+    }
+
+    private void onEvent(ReadableMap event) {
+      if (!"close".equals(event.getString("type"))) {
+        return;
+      }
+
+      CompletableFuture<ReadableMap> close = calls.remove(event.getInt("id"));
+
+      if (close != null) {
+        close.complete(event);
+      }
+    }
+  }
+}
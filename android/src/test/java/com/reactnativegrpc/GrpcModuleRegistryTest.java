@@ -0,0 +1,149 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcModuleRegistryTest {
+  private static final int CLIENT_ID = 1;
+  private static final int THREADS = 8;
+  private static final int CALLS_PER_THREAD = 250;
+
+  private EchoServer server;
+  private TestEvents events;
+  private GrpcModule module;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true), mock(Promise.class));
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Test
+  public void concurrentCallsAreNeitherLostNorLeaked() throws Exception {
+    ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger nextId = new AtomicInteger(1);
+    List<Integer> cancelled = new ArrayList<>();
+    Promise promise = mock(Promise.class);
+
+    for (int t = 0; t < THREADS; t++) {
+      threads.execute(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+
+        for (int i = 0; i < CALLS_PER_THREAD; i++) {
+          int callId = nextId.getAndIncrement();
+
+          module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request(callId), new JavaOnlyMap(), promise);
+
+          if (callId % 5 == 0) {
+            module.cancelGrpcCall(callId, mock(Promise.class));
+
+            synchronized (cancelled) {
+              cancelled.add(callId);
+            }
+          }
+        }
+      });
+    }
+
+    start.countDown();
+    threads.shutdown();
+    assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+
+    int calls = THREADS * CALLS_PER_THREAD;
+
+    verify(promise, timeout(10_000).times(calls)).resolve(null);
+    verify(promise, never()).reject(any(Throwable.class));
+
+    for (int callId = 1; callId <= calls; callId++) {
+      ReadableMap close = events.awaitClose(callId);
+      int code = close.getInt("code");
+
+      assertEquals("close events of call " + callId, 1, countCloseEvents(callId));
+
+      if (cancelled.contains(callId)) {
+        assertTrue(code == Status.Code.OK.value() || code == Status.Code.CANCELLED.value());
+      } else {
+        assertEquals(Status.Code.OK.value(), code);
+        assertEquals(request(callId).getString("data"), close.getString("payload"));
+      }
+    }
+
+    // Finished calls are no longer registered, so there is nothing left to cancel.
+    for (int callId = 1; callId <= calls; callId++) {
+      Promise cancel = mock(Promise.class);
+
+      module.cancelGrpcCall(callId, cancel);
+
+      verify(cancel).resolve(false);
+    }
+  }
+
+  @Test
+  public void callsOfOneClientDoNotReplaceEachOther() throws Exception {
+    Promise promise = mock(Promise.class);
+
+    module.unaryCall(1, CLIENT_ID, EchoServer.UNARY, request(1), new JavaOnlyMap(), promise);
+    module.unaryCall(2, CLIENT_ID, EchoServer.UNARY, request(2), new JavaOnlyMap(), promise);
+
+    assertEquals(request(1).getString("data"), events.awaitClose(1).getString("payload"));
+    assertEquals(request(2).getString("data"), events.awaitClose(2).getString("payload"));
+  }
+
+  private int countCloseEvents(int callId) {
+    int count = 0;
+
+    for (ReadableMap event : events.getEvents(callId)) {
+      if ("close".equals(event.getString("type"))) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  private static JavaOnlyMap request(int callId) {
+    byte[] data = {(byte) (callId >> 24), (byte) (callId >> 16), (byte) (callId >> 8), (byte) callId};
+
+    return JavaOnlyMap.of("data", GrpcPayloadCodec.encode(data));
+  }
+}
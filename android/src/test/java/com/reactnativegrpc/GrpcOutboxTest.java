@@ -0,0 +1,324 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcOutboxTest {
+  private static final int CLIENT_ID = 1;
+  private static final Metadata.Key<String> IDEMPOTENCY_KEY = Metadata.Key.of("idempotency-key", Metadata.ASCII_STRING_MARSHALLER);
+  private static final String DATA = GrpcPayloadCodec.encode(new byte[] {1, 2, 3});
+  // The magic number and the version.
+  private static final double LOG_HEADER_SIZE = 8;
+  // The record type and the sequence number.
+  private static final double DONE_RECORD_SIZE = 9;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<GrpcModule> modules = new ArrayList<>();
+  private File filesDir;
+  private EchoServer server;
+  // Kept while the server is down, and for the server brought back on the same port.
+  private String host;
+
+  @Before
+  public void setUp() throws Exception {
+    filesDir = folder.newFolder();
+    server = EchoServer.start();
+    host = server.getAddress();
+  }
+
+  @After
+  public void tearDown() {
+    for (GrpcModule module : modules) {
+      module.invalidate();
+    }
+
+    server.close();
+  }
+
+  @Test
+  public void deliversCallsWithAnIdempotencyKey() throws Exception {
+    TestEvents events = new TestEvents();
+    GrpcModule module = launch(events);
+
+    call(module, 1, new JavaOnlyMap());
+
+    ReadableMap close = events.awaitClose(1);
+
+    assertEquals(Status.Code.OK.value(), close.getInt("code"));
+    assertEquals(DATA, close.getString("payload"));
+    assertNotNull(server.getHeaders().get(0).get(IDEMPOTENCY_KEY));
+  }
+
+  @Test
+  public void keepsTheAppsIdempotencyKeyInAnyCase() throws Exception {
+    TestEvents events = new TestEvents();
+    GrpcModule module = launch(events);
+
+    call(module, 1, JavaOnlyMap.of("Idempotency-Key", "app-key"));
+    events.awaitClose(1);
+
+    List<String> keys = new ArrayList<>();
+
+    for (String key : server.getHeaders().get(0).getAll(IDEMPOTENCY_KEY)) {
+      keys.add(key);
+    }
+
+    assertEquals(1, keys.size());
+    assertEquals("app-key", keys.get(0));
+  }
+
+  @Test
+  public void replaysPendingCallsAfterARelaunch() throws Exception {
+    int port = server.getPort();
+
+    server.close();
+
+    GrpcModule killed = launch(new TestEvents());
+
+    call(killed, 1, JavaOnlyMap.of("idempotency-key", "replayed"));
+    // Every record is flushed once it is written.
+    awaitLogAbove(killed, LOG_HEADER_SIZE);
+    killed.invalidate();
+
+    server = EchoServer.start(port);
+
+    TestEvents events = new TestEvents();
+    GrpcModule relaunched = launch(events);
+
+    server.awaitCalls(1);
+    awaitMetric(relaunched, "delivered", 1);
+
+    assertEquals("replayed", server.getHeaders().get(0).get(IDEMPOTENCY_KEY));
+    // Nothing in this launch waits for the call.
+    assertEquals(0, events.getCallEventCount());
+  }
+
+  @Test
+  public void deliversOnceTheServerIsBack() throws Exception {
+    int port = server.getPort();
+
+    server.close();
+
+    TestEvents events = new TestEvents();
+    GrpcModule module = launch(events);
+
+    call(module, 1, new JavaOnlyMap());
+    awaitLogAbove(module, LOG_HEADER_SIZE);
+
+    assertEquals(0, events.getEvents(1).size());
+
+    server = EchoServer.start(port);
+
+    assertEquals(Status.Code.OK.value(), events.awaitClose(1, 30_000).getInt("code"));
+  }
+
+  @Test
+  public void failsCallsWithAStatusThatIsNotRetried() throws Exception {
+    TestEvents events = new TestEvents();
+    GrpcModule module = launch(events);
+
+    server.hold();
+    call(module, 1, JavaOnlyMap.of("x-fail", Status.Code.INVALID_ARGUMENT.name()));
+
+    double size = awaitLogAbove(module, LOG_HEADER_SIZE);
+
+    server.release();
+
+    assertEquals(Status.Code.INVALID_ARGUMENT.value(), events.awaitClose(1).getInt("code"));
+
+    awaitMetric(module, "logSize", size + DONE_RECORD_SIZE);
+    module.invalidate();
+
+    GrpcModule relaunched = launch(new TestEvents());
+
+    // Loaded and rewritten without the call.
+    awaitMetric(relaunched, "logSize", LOG_HEADER_SIZE);
+
+    assertEquals(0, metric(relaunched, "recovered"), 0);
+    assertEquals(1, server.getCalls());
+  }
+
+  @Test
+  public void cancelledCallsAreNotReplayed() throws Exception {
+    int port = server.getPort();
+
+    server.close();
+
+    TestEvents events = new TestEvents();
+    GrpcModule module = launch(events);
+
+    call(module, 1, new JavaOnlyMap());
+
+    double size = awaitLogAbove(module, LOG_HEADER_SIZE);
+
+    module.cancelGrpcCall(1, mock(Promise.class));
+
+    assertEquals(Status.Code.CANCELLED.value(), events.awaitClose(1).getInt("code"));
+
+    awaitMetric(module, "logSize", size + DONE_RECORD_SIZE);
+    module.invalidate();
+
+    server = EchoServer.start(port);
+
+    GrpcModule relaunched = launch(new TestEvents());
+    Promise connected = mock(Promise.class);
+
+    relaunched.connect(CLIENT_ID, 5_000, connected);
+    verify(connected, timeout(5_000)).resolve(null);
+    awaitMetric(relaunched, "logSize", LOG_HEADER_SIZE);
+
+    assertEquals(0, metric(relaunched, "recovered"), 0);
+    assertEquals(0, server.getCalls());
+  }
+
+  @Test
+  public void replaysTheRecordsBeforeOneCutShort() throws Exception {
+    int port = server.getPort();
+
+    server.close();
+
+    GrpcModule killed = launch(new TestEvents());
+    double size = LOG_HEADER_SIZE;
+
+    String[] keys = {"a", "b", "c"};
+
+    for (int i = 0; i < keys.length; i++) {
+      call(killed, i + 1, JavaOnlyMap.of("idempotency-key", keys[i]));
+      size = awaitLogAbove(killed, size);
+    }
+
+    killed.invalidate();
+
+    // As if the app was killed while writing the last record.
+    File[] logs = new File(filesDir, "grpc-outbox").listFiles();
+
+    assertEquals(1, logs.length);
+
+    try (RandomAccessFile log = new RandomAccessFile(logs[0], "rw")) {
+      log.setLength((long) size - 5);
+    }
+
+    server = EchoServer.start(port);
+
+    GrpcModule relaunched = launch(new TestEvents());
+
+    awaitMetric(relaunched, "delivered", 2);
+
+    assertEquals(2, metric(relaunched, "recovered"), 0);
+    assertEquals(2, server.getCalls());
+    assertEquals("a", server.getHeaders().get(0).get(IDEMPOTENCY_KEY));
+    assertEquals("b", server.getHeaders().get(1).get(IDEMPOTENCY_KEY));
+  }
+
+  @Test
+  public void rejectsCallsWithHeadersTooLongForTheLog() throws Exception {
+    TestEvents events = new TestEvents();
+    GrpcModule module = launch(events);
+    JavaOnlyMap request = JavaOnlyMap.of("data", DATA, "options", JavaOnlyMap.of("outbox", true));
+    Promise promise = mock(Promise.class);
+    ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+
+    module.unaryCall(1, CLIENT_ID, EchoServer.UNARY, request, JavaOnlyMap.of("x-long", new String(new char[70_000]).replace('\0', 'a')), promise);
+
+    verify(promise).reject(error.capture());
+    assertTrue(error.getValue() instanceof IllegalArgumentException);
+    awaitMetric(module, "enqueued", 0);
+
+    call(module, 2, new JavaOnlyMap());
+
+    assertEquals(Status.Code.OK.value(), events.awaitClose(2).getInt("code"));
+  }
+
+  private GrpcModule launch(TestEvents events) {
+    ReactApplicationContext context = mock(ReactApplicationContext.class);
+
+    when(context.getFilesDir()).thenReturn(filesDir);
+
+    GrpcModule module = new GrpcModule(context, null, null, events);
+    JavaOnlyMap outbox = JavaOnlyMap.of("initialBackoff", 50.0, "maxBackoff", 200.0);
+
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", host, "insecure", true, "outbox", outbox), mock(Promise.class));
+    modules.add(module);
+
+    return module;
+  }
+
+  private static void call(GrpcModule module, int callId, JavaOnlyMap headers) {
+    JavaOnlyMap request = JavaOnlyMap.of("data", DATA, "options", JavaOnlyMap.of("outbox", true));
+
+    module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request, headers, mock(Promise.class));
+  }
+
+  private static double metric(GrpcModule module, String name) {
+    Promise promise = mock(Promise.class);
+    ArgumentCaptor<ReadableMap> metrics = ArgumentCaptor.forClass(ReadableMap.class);
+
+    module.getMetrics(CLIENT_ID, promise);
+    verify(promise).resolve(metrics.capture());
+
+    return metrics.getValue().getMap("outbox").getDouble(name);
+  }
+
+  /**
+   * Waits for a record to be written after the log reached {@code size}, and returns the new size.
+   */
+  private static double awaitLogAbove(GrpcModule module, double size) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+
+    while (true) {
+      double actual = metric(module, "logSize");
+
+      if (actual > size) {
+        return actual;
+      }
+
+      assertTrue("outbox.logSize is " + actual, System.currentTimeMillis() < deadline);
+      Thread.sleep(20);
+    }
+  }
+
+  private static void awaitMetric(GrpcModule module, String name, double value) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+
+    while (true) {
+      double actual = metric(module, name);
+
+      if (actual == value) {
+        return;
+      }
+
+      assertTrue("outbox." + name + " is " + actual, System.currentTimeMillis() < deadline);
+      Thread.sleep(20);
+    }
+  }
+}
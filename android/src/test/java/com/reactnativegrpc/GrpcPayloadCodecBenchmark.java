@@ -0,0 +1,88 @@
+package com.reactnativegrpc;
+
+import android.util.Base64;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the payload codec with {@link Base64} and {@code NO_WRAP}, which the module used
+ * before, for each payload size. The {@code bytes} counter is the payload bytes encoded or decoded
+ * per second, and the GC profiler reports the bytes allocated per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GrpcPayloadCodecBenchmark {
+  @Param({"16", "1024", "65536"})
+  public int payloadSize;
+
+  private byte[] data;
+  private String encoded;
+
+  @Setup
+  public void setUp() {
+    data = new byte[payloadSize];
+
+    new Random(42).nextBytes(data);
+
+    encoded = Base64.encodeToString(data, Base64.NO_WRAP);
+  }
+
+  @Benchmark
+  public String codecEncode(Bytes bytes) {
+    bytes.bytes += payloadSize;
+
+    return GrpcPayloadCodec.encode(data);
+  }
+
+  @Benchmark
+  public String base64Encode(Bytes bytes) {
+    bytes.bytes += payloadSize;
+
+    return Base64.encodeToString(data, Base64.NO_WRAP);
+  }
+
+  @Benchmark
+  public byte[] codecDecode(Bytes bytes) {
+    bytes.bytes += payloadSize;
+
+    return GrpcPayloadCodec.decode(encoded);
+  }
+
+  @Benchmark
+  public byte[] base64Decode(Bytes bytes) {
+    bytes.bytes += payloadSize;
+
+    return Base64.decode(encoded, Base64.NO_WRAP);
+  }
+
+  /**
+   * Counts payload bytes, which JMH reports per second.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Bytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+}
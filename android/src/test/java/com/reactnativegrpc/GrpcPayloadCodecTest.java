@@ -0,0 +1,101 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.util.Base64;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcPayloadCodecTest {
+  private final Random random = new Random(42);
+
+  @Test
+  public void encodesLikeAndroidBase64() {
+    for (int length = 0; length < 300; length++) {
+      byte[] data = randomBytes(length);
+
+      assertEquals(Base64.encodeToString(data, Base64.NO_WRAP), GrpcPayloadCodec.encode(data));
+    }
+  }
+
+  @Test
+  public void encodesARangeOfTheArray() {
+    byte[] data = randomBytes(64);
+
+    for (int offset = 0; offset < 4; offset++) {
+      for (int length = 0; length < 8; length++) {
+        assertEquals(
+          Base64.encodeToString(data, offset, length, Base64.NO_WRAP),
+          GrpcPayloadCodec.encode(data, offset, length));
+      }
+    }
+  }
+
+  @Test
+  public void decodesLikeAndroidBase64() {
+    for (int length = 0; length < 300; length++) {
+      byte[] data = randomBytes(length);
+      String encoded = Base64.encodeToString(data, Base64.NO_WRAP);
+
+      assertArrayEquals(Base64.decode(encoded, Base64.NO_WRAP), GrpcPayloadCodec.decode(encoded));
+      assertArrayEquals(data, GrpcPayloadCodec.decode(encoded));
+    }
+  }
+
+  @Test
+  public void skipsLineBreaksAndWhitespace() {
+    byte[] data = randomBytes(500);
+    String wrapped = Base64.encodeToString(data, Base64.DEFAULT);
+
+    assertArrayEquals(data, GrpcPayloadCodec.decode(wrapped));
+    assertArrayEquals(data, GrpcPayloadCodec.decode(Base64.encodeToString(data, Base64.CRLF)));
+
+    String spaced = " QU Jj\tZA== \n";
+    assertArrayEquals(Base64.decode(spaced, Base64.DEFAULT), GrpcPayloadCodec.decode(spaced));
+  }
+
+  @Test
+  public void decodesWithoutPadding() {
+    for (int length = 0; length < 10; length++) {
+      byte[] data = randomBytes(length);
+      String encoded = Base64.encodeToString(data, Base64.NO_WRAP | Base64.NO_PADDING);
+
+      assertArrayEquals(data, GrpcPayloadCodec.decode(encoded));
+    }
+  }
+
+  @Test
+  public void rejectsInvalidInput() {
+    assertInvalid("QUJDR");
+    assertInvalid("QQ==QQ==");
+    assertInvalid("QQ=Q");
+  }
+
+  private void assertInvalid(String data) {
+    try {
+      Base64.decode(data, Base64.DEFAULT);
+      fail("android.util.Base64 accepted " + data);
+    } catch (IllegalArgumentException expected) {
+    }
+
+    try {
+      GrpcPayloadCodec.decode(data);
+      fail("Accepted " + data);
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private byte[] randomBytes(int length) {
+    byte[] data = new byte[length];
+    random.nextBytes(data);
+
+    return data;
+  }
+}
@@ -0,0 +1,236 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcResponseCacheTest {
+  private static final String PATH = "test.Echo/Unary";
+  private static final byte[] DATA = {1, 2, 3};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+
+  @After
+  public void tearDown() {
+    diskExecutor.shutdownNow();
+  }
+
+  @Test
+  public void keyDependsOnListedHeadersInAnyCase() {
+    GrpcResponseCache cache = create(JavaOnlyMap.of("headers", JavaOnlyArray.of("X-User")));
+
+    String a = cache.key(PATH, DATA, headers("x-user", "a"));
+
+    assertEquals(a, cache.key(PATH, DATA, headers("X-USER", "a")));
+    assertNotEquals(a, cache.key(PATH, DATA, headers("x-user", "b")));
+    assertNotEquals(a, cache.key(PATH, new byte[] {4}, headers("x-user", "a")));
+    assertNotEquals(a, cache.key("test.Echo/Other", DATA, headers("x-user", "a")));
+
+    // Headers that aren't listed are not part of the key.
+    Metadata other = headers("x-user", "a");
+    other.put(Metadata.Key.of("x-trace", Metadata.ASCII_STRING_MARSHALLER), "1");
+
+    assertEquals(a, cache.key(PATH, DATA, other));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInvalidHeaderNames() {
+    create(JavaOnlyMap.of("headers", JavaOnlyArray.of("not a header")));
+  }
+
+  @Test
+  public void storesSuccessfulSingleResponses() throws Exception {
+    GrpcResponseCache cache = create(new JavaOnlyMap());
+
+    record(cache, "ok", Status.OK, "AAAA");
+    record(cache, "failed", Status.UNAVAILABLE, "AAAA");
+
+    GrpcResponseCache.Entry entry = lookup(cache, "ok");
+
+    assertNotNull(entry);
+    assertEquals("AAAA", entry.response);
+    assertEquals("1", entry.headers.get("x-header"));
+    assertNull(lookup(cache, "failed"));
+    assertEquals(1, cache.getMetrics().getDouble("hits"), 0);
+    assertEquals(1, cache.getMetrics().getDouble("misses"), 0);
+  }
+
+  @Test
+  public void servesStaleEntriesUntilTheyExpire() throws Exception {
+    GrpcResponseCache stale = create(JavaOnlyMap.of("ttl", 0.0, "staleWhileRevalidate", 60_000.0));
+
+    record(stale, "key", Status.OK, "AAAA");
+    Thread.sleep(5);
+
+    GrpcResponseCache.Entry entry = lookup(stale, "key");
+
+    assertNotNull(entry);
+    assertTrue(stale.isStale(entry));
+    assertTrue(stale.beginRevalidation("key"));
+    assertFalse(stale.beginRevalidation("key"));
+
+    stale.endRevalidation("key");
+
+    assertTrue(stale.beginRevalidation("key"));
+
+    GrpcResponseCache expiring = create(JavaOnlyMap.of("ttl", 0.0));
+
+    record(expiring, "key", Status.OK, "AAAA");
+    Thread.sleep(5);
+
+    assertNull(lookup(expiring, "key"));
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedEntries() throws Exception {
+    // Room for two entries.
+    GrpcResponseCache cache = create(JavaOnlyMap.of("maxBytes", 250.0));
+
+    record(cache, "a", Status.OK, "AAAA");
+    record(cache, "b", Status.OK, "BBBB");
+    lookup(cache, "a");
+    record(cache, "c", Status.OK, "CCCC");
+
+    assertNotNull(lookup(cache, "a"));
+    assertNull(lookup(cache, "b"));
+    assertNotNull(lookup(cache, "c"));
+    assertEquals(1, cache.getMetrics().getDouble("evictions"), 0);
+  }
+
+  @Test
+  public void readsPersistedEntriesOnTheDiskExecutor() throws Exception {
+    File root = folder.newFolder();
+    JavaOnlyMap options = JavaOnlyMap.of("persist", true);
+
+    record(create(options, root), "key", Status.OK, "AAAA");
+    diskExecutor.submit(() -> null).get();
+
+    // A new cache, as after a relaunch, only has the entry on disk.
+    GrpcResponseCache relaunched = create(options, root);
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    GrpcResponseCache.Entry entry = lookup(relaunched, "key", thread);
+
+    assertNotNull(entry);
+    assertEquals("AAAA", entry.response);
+    assertEquals("1", entry.headers.get("x-header"));
+    assertNotEquals(Thread.currentThread(), thread.get());
+
+    // Now it is in memory too.
+    lookup(relaunched, "key", thread);
+
+    assertSame(Thread.currentThread(), thread.get());
+  }
+
+  @Test
+  public void keysCallsByTheClientHeadersToo() throws Exception {
+    try (EchoServer server = EchoServer.start()) {
+      TestEvents events = new TestEvents();
+      GrpcModule module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+      JavaOnlyMap cache = JavaOnlyMap.of("headers", JavaOnlyArray.of("x-user"));
+
+      module.setGrpcSettings(1, JavaOnlyMap.of("host", server.getAddress(), "insecure", true, "headers", JavaOnlyMap.of("x-user", "a"), "cache", cache), mock(Promise.class));
+
+      try {
+        Promise promise = mock(Promise.class);
+        JavaOnlyMap request = JavaOnlyMap.of("data", GrpcPayloadCodec.encode(DATA), "options", JavaOnlyMap.of("cache", true));
+
+        module.unaryCall(1, 1, EchoServer.UNARY, request, new JavaOnlyMap(), promise);
+        events.awaitClose(1);
+
+        // Served from the cache.
+        module.unaryCall(2, 1, EchoServer.UNARY, request, new JavaOnlyMap(), promise);
+
+        assertEquals(GrpcPayloadCodec.encode(DATA), events.awaitClose(2).getString("payload"));
+        assertEquals(1, server.getCalls());
+
+        // The call's header replaces the client's, so the request is different.
+        module.unaryCall(3, 1, EchoServer.UNARY, request, JavaOnlyMap.of("x-user", "b"), promise);
+        events.awaitClose(3);
+
+        assertEquals(2, server.getCalls());
+        verify(promise, times(3)).resolve(null);
+      } finally {
+        module.invalidate();
+      }
+    }
+  }
+
+  private GrpcResponseCache create(JavaOnlyMap options) {
+    return create(options, folder.getRoot());
+  }
+
+  private GrpcResponseCache create(JavaOnlyMap options, File root) {
+    JavaOnlyMap settings = JavaOnlyMap.of("host", "localhost:1", "cache", options);
+
+    return GrpcResponseCache.create(settings, root, diskExecutor);
+  }
+
+  private static void record(GrpcResponseCache cache, String key, Status status, String response) {
+    GrpcCallListener.Observer recorder = cache.recorder(key, false);
+
+    recorder.onHeaders(Collections.singletonMap("x-header", "1"));
+    recorder.onMessage(response);
+    recorder.onClose(status, Collections.<String, String>emptyMap());
+  }
+
+  private static GrpcResponseCache.Entry lookup(GrpcResponseCache cache, String key) throws InterruptedException {
+    return lookup(cache, key, new AtomicReference<>());
+  }
+
+  private static GrpcResponseCache.Entry lookup(GrpcResponseCache cache, String key, AtomicReference<Thread> thread) throws InterruptedException {
+    AtomicReference<GrpcResponseCache.Entry> result = new AtomicReference<>();
+    CountDownLatch done = new CountDownLatch(1);
+
+    cache.get(key, (entry) -> {
+      result.set(entry);
+      thread.set(Thread.currentThread());
+      done.countDown();
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+
+    return result.get();
+  }
+
+  private static Metadata headers(String name, String value) {
+    Metadata headers = new Metadata();
+
+    headers.put(Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER), value);
+
+    return headers;
+  }
+}
@@ -0,0 +1,185 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcSettingsTest {
+  private static final int CLIENT_ID = 1;
+  private static final Metadata.Key<String> X_A = Metadata.Key.of("x-a", Metadata.ASCII_STRING_MARSHALLER);
+  private static final Metadata.Key<String> USER_AGENT = Metadata.Key.of("user-agent", Metadata.ASCII_STRING_MARSHALLER);
+
+  private EchoServer server;
+  private TestEvents events;
+  private GrpcModule module;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Test
+  public void rejectsInvalidTuningValuesInsteadOfThrowing() {
+    List<JavaOnlyMap> invalid = Arrays.asList(
+      JavaOnlyMap.of("flowControlWindow", -1),
+      JavaOnlyMap.of("maxConcurrentCalls", 0),
+      JavaOnlyMap.of("compressionLevel", 10, "compressionName", "gzip"),
+      JavaOnlyMap.of("executor", JavaOnlyMap.of("type", "no_such_executor")),
+      JavaOnlyMap.of("eventBatching", JavaOnlyMap.of("maxSize", 0)),
+      JavaOnlyMap.of("channelPool", JavaOnlyMap.of("size", 0)),
+      JavaOnlyMap.of("metrics", JavaOnlyMap.of("interval", -1)));
+
+    for (JavaOnlyMap settings : invalid) {
+      Promise promise = mock(Promise.class);
+
+      settings.putString("host", server.getAddress());
+      settings.putBoolean("insecure", true);
+      module.setGrpcSettings(CLIENT_ID, settings, promise);
+
+      verify(promise).reject(any(IllegalArgumentException.class));
+      verify(promise, never()).resolve(any());
+    }
+
+    // No client was created.
+    Promise promise = mock(Promise.class);
+    ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+
+    module.unaryCall(1, CLIENT_ID, EchoServer.UNARY, JavaOnlyMap.of("data", ""), new JavaOnlyMap(), promise);
+
+    verify(promise).reject(error.capture());
+    assertEquals("Channel not created", error.getValue().getMessage());
+  }
+
+  @Test
+  public void appliesCallSettingsInPlace() throws Exception {
+    module.setGrpcSettings(CLIENT_ID, settings(), mock(Promise.class));
+    assertEquals(Status.Code.OK.value(), call(1).getInt("code"));
+
+    Promise promise = mock(Promise.class);
+
+    module.setGrpcSettings(CLIENT_ID, settings("headers", JavaOnlyMap.of("x-a", "1"), "requestTimeout", 200), promise);
+    verify(promise).resolve(null);
+
+    assertEquals(Status.Code.OK.value(), call(2).getInt("code"));
+    assertEquals("1", server.getHeaders().get(1).get(X_A));
+
+    server.hold();
+
+    assertEquals(Status.Code.DEADLINE_EXCEEDED.value(), call(3).getInt("code"));
+    // Every call went over the first connection.
+    assertEquals(1, server.getConnections());
+  }
+
+  @Test
+  public void drainsCallsInFlightOnThePreviousChannel() throws Exception {
+    module.setGrpcSettings(CLIENT_ID, settings("userAgent", "first"), mock(Promise.class));
+    server.hold();
+    start(1);
+    server.awaitCalls(1);
+
+    module.setGrpcSettings(CLIENT_ID, settings("userAgent", "second", "drainTimeout", 10_000), mock(Promise.class));
+    start(2);
+    server.awaitCalls(2);
+
+    assertTrue(server.getHeaders().get(1).get(USER_AGENT).startsWith("second"));
+
+    server.release();
+
+    assertEquals(Status.Code.OK.value(), events.awaitClose(1).getInt("code"));
+    assertEquals(Status.Code.OK.value(), events.awaitClose(2).getInt("code"));
+    assertEquals(2, server.getConnections());
+  }
+
+  @Test
+  public void cancelsCallsStillRunningAfterTheDrainTimeout() throws Exception {
+    module.setGrpcSettings(CLIENT_ID, settings("userAgent", "first"), mock(Promise.class));
+    server.hold();
+    start(1);
+    server.awaitCalls(1);
+
+    module.setGrpcSettings(CLIENT_ID, settings("userAgent", "second", "drainTimeout", 100), mock(Promise.class));
+
+    assertEquals(Status.Code.UNAVAILABLE.value(), events.awaitClose(1).getInt("code"));
+  }
+
+  @Test
+  public void keepsThePreviousConnectionAfterAnInvalidUpdate() throws Exception {
+    module.setGrpcSettings(CLIENT_ID, settings("headers", JavaOnlyMap.of("x-a", "1")), mock(Promise.class));
+    assertEquals(Status.Code.OK.value(), call(1).getInt("code"));
+
+    // Needs a new channel.
+    Promise promise = mock(Promise.class);
+
+    module.setGrpcSettings(CLIENT_ID, settings("flowControlWindow", -1), promise);
+    verify(promise).reject(any(IllegalArgumentException.class));
+
+    // Applied in place.
+    promise = mock(Promise.class);
+    module.setGrpcSettings(CLIENT_ID, settings("headers", JavaOnlyMap.of("x-a", "2", "not a header", "3")), promise);
+    verify(promise).reject(any(IllegalArgumentException.class));
+
+    assertEquals(Status.Code.OK.value(), call(2).getInt("code"));
+    assertEquals("1", server.getHeaders().get(1).get(X_A));
+    assertEquals(1, server.getConnections());
+  }
+
+  @Test
+  public void resolvesValidSettings() {
+    Promise promise = mock(Promise.class);
+
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true, "flowControlWindow", 65_535), promise);
+
+    verify(promise).resolve(null);
+  }
+
+  private JavaOnlyMap settings(Object... keysAndValues) {
+    JavaOnlyMap settings = JavaOnlyMap.of(keysAndValues);
+
+    settings.putString("host", server.getAddress());
+    settings.putBoolean("insecure", true);
+
+    return settings;
+  }
+
+  private void start(int callId) {
+    JavaOnlyMap request = JavaOnlyMap.of("data", GrpcPayloadCodec.encode(new byte[] {(byte) callId}));
+
+    module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request, new JavaOnlyMap(), mock(Promise.class));
+  }
+
+  private ReadableMap call(int callId) throws InterruptedException {
+    start(callId);
+
+    return events.awaitClose(callId);
+  }
+}
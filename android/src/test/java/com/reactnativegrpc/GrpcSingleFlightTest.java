@@ -0,0 +1,172 @@
+package com.reactnativegrpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+@RunWith(RobolectricTestRunner.class)
+public class GrpcSingleFlightTest {
+  private static final int CLIENT_ID = 1;
+  private static final String DATA = GrpcPayloadCodec.encode(new byte[] {1, 2, 3});
+  private static final Metadata.Key<String> X_USER = Metadata.Key.of("x-user", Metadata.ASCII_STRING_MARSHALLER);
+
+  private EchoServer server;
+  private TestEvents events;
+  private GrpcModule module;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EchoServer.start();
+    events = new TestEvents();
+    module = new GrpcModule(mock(ReactApplicationContext.class), null, null, events);
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true), mock(Promise.class));
+  }
+
+  @After
+  public void tearDown() {
+    module.invalidate();
+    server.close();
+  }
+
+  @Test
+  public void identicalCallsShareOneCall() throws Exception {
+    server.hold();
+
+    for (int callId = 1; callId <= 3; callId++) {
+      call(callId, DATA, new JavaOnlyMap());
+    }
+
+    server.awaitCalls(1);
+    server.release();
+
+    for (int callId = 1; callId <= 3; callId++) {
+      ReadableMap close = events.awaitClose(callId);
+
+      assertEquals(Status.Code.OK.value(), close.getInt("code"));
+      assertEquals(DATA, close.getString("payload"));
+    }
+
+    assertEquals(1, server.getCalls());
+  }
+
+  @Test
+  public void callsWithDifferentHeadersOrDataDoNotShare() throws Exception {
+    server.hold();
+
+    call(1, DATA, JavaOnlyMap.of("x-user", "a"));
+    call(2, DATA, JavaOnlyMap.of("x-user", "b"));
+    call(3, GrpcPayloadCodec.encode(new byte[] {4}), JavaOnlyMap.of("x-user", "a"));
+
+    server.awaitCalls(3);
+    server.release();
+
+    for (int callId = 1; callId <= 3; callId++) {
+      assertEquals(Status.Code.OK.value(), events.awaitClose(callId).getInt("code"));
+    }
+  }
+
+  @Test
+  public void cancellingAJoinedCallLeavesTheOthersRunning() throws Exception {
+    server.hold();
+
+    for (int callId = 1; callId <= 3; callId++) {
+      call(callId, DATA, new JavaOnlyMap());
+    }
+
+    server.awaitCalls(1);
+
+    module.cancelGrpcCall(1, mock(Promise.class));
+    module.cancelGrpcCall(3, mock(Promise.class));
+
+    assertEquals(Status.Code.CANCELLED.value(), events.awaitClose(1).getInt("code"));
+    assertEquals(Status.Code.CANCELLED.value(), events.awaitClose(3).getInt("code"));
+
+    server.release();
+
+    ReadableMap close = events.awaitClose(2);
+
+    assertEquals(Status.Code.OK.value(), close.getInt("code"));
+    assertEquals(DATA, close.getString("payload"));
+    assertEquals(1, server.getCalls());
+  }
+
+  @Test
+  public void finishedCallsCannotBeJoined() throws Exception {
+    call(1, DATA, new JavaOnlyMap());
+    events.awaitClose(1);
+
+    call(2, DATA, new JavaOnlyMap());
+    events.awaitClose(2);
+
+    assertEquals(2, server.getCalls());
+  }
+
+  @Test
+  public void callsAfterADefaultHeaderUpdateDoNotJoinEarlierOnes() throws Exception {
+    server.hold();
+
+    call(1, DATA, new JavaOnlyMap());
+    server.awaitCalls(1);
+
+    module.setGrpcSettings(CLIENT_ID, JavaOnlyMap.of("host", server.getAddress(), "insecure", true, "headers", JavaOnlyMap.of("x-user", "b")), mock(Promise.class));
+    call(2, DATA, new JavaOnlyMap());
+    // The same headers as the call's own.
+    call(3, DATA, JavaOnlyMap.of("x-user", "b"));
+
+    server.awaitCalls(2);
+    server.release();
+
+    for (int callId = 1; callId <= 3; callId++) {
+      assertEquals(Status.Code.OK.value(), events.awaitClose(callId).getInt("code"));
+    }
+
+    assertEquals(2, server.getCalls());
+    assertEquals("b", server.getHeaders().get(1).get(X_USER));
+  }
+
+  @Test
+  public void keyDependsOnTheSentHeadersAndTheRequestedMetadataEvents() {
+    GrpcSingleFlight singleFlight = new GrpcSingleFlight();
+    byte[] data = {1};
+
+    assertEquals(
+      singleFlight.key("a/b", data, headers("x", "1", "y", "2"), true, true),
+      singleFlight.key("a/b", data, headers("Y", "2", "x", "1"), true, true));
+    assertNotEquals(
+      singleFlight.key("a/b", data, headers("x", "1"), true, true),
+      singleFlight.key("a/b", data, headers("x", "2"), true, true));
+    assertNotEquals(
+      singleFlight.key("a/b", data, new Metadata(), true, true),
+      singleFlight.key("a/b", data, new Metadata(), true, false));
+  }
+
+  private static Metadata headers(String... namesAndValues) {
+    Metadata headers = new Metadata();
+
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      headers.put(Metadata.Key.of(namesAndValues[i], Metadata.ASCII_STRING_MARSHALLER), namesAndValues[i + 1]);
+    }
+
+    return headers;
+  }
+
+  private void call(int callId, String data, JavaOnlyMap headers) {
+    JavaOnlyMap request = JavaOnlyMap.of("data", data, "options", JavaOnlyMap.of("singleFlight", true));
+
+    module.unaryCall(callId, CLIENT_ID, EchoServer.UNARY, request, headers, mock(Promise.class));
+  }
+}
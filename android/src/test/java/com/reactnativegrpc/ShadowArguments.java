@@ -0,0 +1,26 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Creates Java maps and arrays instead of native ones, which need the React Native libraries.
+ */
+@Implements(value = Arguments.class, isInAndroidSdk = false)
+public class ShadowArguments {
+  @Implementation
+  public static WritableMap createMap() {
+    return new JavaOnlyMap();
+  }
+
+  @Implementation
+  public static WritableArray createArray() {
+    return new JavaOnlyArray();
+  }
+}
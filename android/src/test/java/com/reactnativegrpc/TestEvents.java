@@ -0,0 +1,89 @@
+package com.reactnativegrpc;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the events a module sends to JS, unpacking batches, so that tests can wait for them.
+ */
+final class TestEvents implements GrpcEventSink {
+  private final List<ReadableMap> callEvents = new ArrayList<>();
+  private final List<ReadableMap> otherEvents = new ArrayList<>();
+  private int batches;
+
+  @Override
+  public synchronized void send(String eventName, Object params) {
+    ReadableMap event = (ReadableMap) params;
+
+    if (GrpcEventDispatcher.CALL_EVENT.equals(eventName)) {
+      callEvents.add(event);
+    } else if (GrpcEventDispatcher.CALL_BATCH_EVENT.equals(eventName)) {
+      ReadableArray events = event.getArray("events");
+
+      for (int i = 0; i < events.size(); i++) {
+        callEvents.add(events.getMap(i));
+      }
+
+      batches++;
+    } else {
+      otherEvents.add(event);
+    }
+
+    notifyAll();
+  }
+
+  synchronized List<ReadableMap> getEvents(int callId) {
+    List<ReadableMap> events = new ArrayList<>();
+
+    for (ReadableMap event : callEvents) {
+      if (event.getInt("id") == callId) {
+        events.add(event);
+      }
+    }
+
+    return events;
+  }
+
+  synchronized int getCallEventCount() {
+    return callEvents.size();
+  }
+
+  synchronized int getBatchCount() {
+    return batches;
+  }
+
+  synchronized List<ReadableMap> getOtherEvents() {
+    return new ArrayList<>(otherEvents);
+  }
+
+  /**
+   * Waits for the close event of a call.
+   */
+  ReadableMap awaitClose(int callId) throws InterruptedException {
+    return awaitClose(callId, 10_000);
+  }
+
+  synchronized ReadableMap awaitClose(int callId, long timeout) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+    while (true) {
+      for (ReadableMap event : callEvents) {
+        if (event.getInt("id") == callId && "close".equals(event.getString("type"))) {
+          return event;
+        }
+      }
+
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+      if (remaining <= 0) {
+        throw new AssertionError("No close event for call " + callId);
+      }
+
+      wait(remaining);
+    }
+  }
+}
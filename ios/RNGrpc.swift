@@ -404,8 +404,10 @@ class RNGrpc: RCTEventEmitter {
         return try? GRPCChannelPool.with(configuration: config)
     }
 
+    // Events only sent by Android are listed too, since JS subscribes to them on every platform
+    // and RCTEventEmitter rejects listeners for unsupported events.
     @objc
     override func supportedEvents() -> [String] {
-        ["grpc-call"]
+        ["grpc-call", "grpc-call-batch", "grpc-connectivity", "grpc-metrics"]
     }
 }
@@ -0,0 +1,214 @@
+import { fromByteArray } from 'base64-js';
+import * as ReactNative from 'react-native';
+import { GrpcClient } from '../client';
+import { GrpcError } from '../errors';
+
+jest.mock('react-native', () => {
+  const listeners = new Map<string, Set<(event: unknown) => void>>();
+
+  class NativeEventEmitter {
+    addListener(eventName: string, listener: (event: unknown) => void) {
+      if (!listeners.has(eventName)) {
+        listeners.set(eventName, new Set());
+      }
+
+      listeners.get(eventName)!.add(listener);
+
+      return { eventName, listener };
+    }
+
+    removeSubscription(subscription: {
+      eventName: string;
+      listener: (event: unknown) => void;
+    }) {
+      listeners.get(subscription.eventName)?.delete(subscription.listener);
+    }
+  }
+
+  return {
+    NativeModules: {
+      Grpc: {
+        setGrpcSettings: jest.fn(),
+        destroyClient: jest.fn(),
+        unaryCall: jest.fn(),
+        serverStreamingCall: jest.fn(),
+        cancelGrpcCall: jest.fn(() => Promise.resolve(true)),
+        requestMessages: jest.fn(),
+        getMetrics: jest.fn(() => Promise.resolve({})),
+        connect: jest.fn(() => Promise.resolve()),
+      },
+    },
+    NativeEventEmitter,
+    emit(eventName: string, event: unknown) {
+      listeners.get(eventName)?.forEach((listener) => listener(event));
+    },
+  };
+});
+
+type MockedReactNative = {
+  NativeModules: { Grpc: Record<string, jest.Mock | undefined> };
+  emit(eventName: string, event: unknown): void;
+};
+
+const { NativeModules, emit } = (ReactNative as unknown) as MockedReactNative;
+const Grpc = NativeModules.Grpc;
+
+const UNARY = 'test.Echo/Unary';
+const STREAM = 'test.Echo/Stream';
+
+const request = new Uint8Array([1, 2, 3]);
+const response = new Uint8Array([4, 5, 6]);
+const payload = fromByteArray(response);
+
+function lastCallId(method: jest.Mock): number {
+  return method.mock.calls[method.mock.calls.length - 1][0];
+}
+
+// Keeps rejections the test doesn't look at from being reported as unhandled.
+function ignore(promise: Promise<unknown>) {
+  promise.catch(() => undefined);
+}
+
+describe('GrpcClient', () => {
+  let client: GrpcClient;
+
+  beforeEach(() => {
+    Grpc.unaryCall!.mockReturnValue(Promise.resolve());
+    Grpc.serverStreamingCall!.mockReturnValue(Promise.resolve());
+
+    client = new GrpcClient({ host: 'localhost:50051' });
+  });
+
+  afterEach(() => {
+    client.destroy();
+  });
+
+  it('settles a unary call from its close event', async () => {
+    const call = client.unaryCall(UNARY, request);
+    const id = lastCallId(Grpc.unaryCall!);
+
+    emit('grpc-call', { id, type: 'headers', payload: { a: '1' } });
+    emit('grpc-call', {
+      id,
+      type: 'close',
+      code: 0,
+      trailers: { b: '2' },
+      payload,
+    });
+
+    await expect(call.response).resolves.toEqual(response);
+    await expect(call.headers).resolves.toEqual({ a: '1' });
+    await expect(call.trailers).resolves.toEqual({ b: '2' });
+  });
+
+  it('handles events delivered in a batch', async () => {
+    const first = client.unaryCall(UNARY, request);
+    const firstId = lastCallId(Grpc.unaryCall!);
+    const second = client.unaryCall(UNARY, request);
+    const secondId = lastCallId(Grpc.unaryCall!);
+
+    emit('grpc-call-batch', {
+      events: [
+        { id: secondId, type: 'close', code: 14, error: 'UNAVAILABLE' },
+        { id: firstId, type: 'close', code: 0, payload },
+      ],
+    });
+
+    await expect(first.response).resolves.toEqual(response);
+    await expect(second.response).rejects.toEqual(
+      new GrpcError('UNAVAILABLE', 14)
+    );
+    await expect(second.trailers).resolves.toEqual({});
+  });
+
+  it('fails a unary call whose native method rejects', async () => {
+    const error = new Error('The outbox option needs the outbox setting');
+
+    Grpc.unaryCall!.mockReturnValue(Promise.reject(error));
+
+    const call = client.unaryCall(UNARY, request);
+    const id = lastCallId(Grpc.unaryCall!);
+
+    await expect(call.response).rejects.toBe(error);
+    await expect(call.headers).rejects.toBe(error);
+    await expect(call.trailers).rejects.toBe(error);
+
+    // The call is forgotten, so late events are ignored.
+    emit('grpc-call', { id, type: 'close', code: 0, payload: '' });
+  });
+
+  it('fails the responses of a stream whose native method rejects', async () => {
+    const error = new Error('Invalid payload length');
+
+    Grpc.serverStreamingCall!.mockReturnValue(Promise.reject(error));
+
+    const call = client.serverStreamCall(STREAM, request);
+    const failure = new Promise((resolve) =>
+      call.responses.on('error', resolve)
+    );
+
+    ignore(call.headers);
+
+    await expect(failure).resolves.toBe(error);
+    await expect(call.trailers).rejects.toBe(error);
+  });
+
+  it('returns credit for streamed messages as the app consumes them', async () => {
+    const call = client.serverStreamCall(STREAM, request, {}, { prefetch: 2 });
+    const id = lastCallId(Grpc.serverStreamingCall!);
+    const received: Uint8Array[] = [];
+
+    call.responses.on('data', (data) => received.push(data));
+
+    emit('grpc-call', { id, type: 'response', payload });
+    emit('grpc-call', { id, type: 'response', payload });
+    emit('grpc-call', { id, type: 'close', code: 0 });
+
+    await call.trailers;
+
+    expect(received).toEqual([response, response]);
+    expect(Grpc.requestMessages).toHaveBeenCalledTimes(2);
+    expect(Grpc.requestMessages).toHaveBeenCalledWith(id, 1);
+  });
+
+  it('cancels the native call when the app cancels', async () => {
+    const call = client.unaryCall(UNARY, request);
+    const id = lastCallId(Grpc.unaryCall!);
+
+    ignore(call.headers);
+    ignore(call.trailers);
+    call.cancel();
+
+    expect(Grpc.cancelGrpcCall).toHaveBeenCalledWith(id);
+    await expect(call.response).rejects.toEqual('aborted');
+  });
+
+  it('rejects an update with the error of the native module', async () => {
+    const error = new Error('flowControlWindow must be a positive integer');
+
+    Grpc.setGrpcSettings!.mockReturnValueOnce(Promise.reject(error));
+
+    await expect(
+      client.updateSettings({ host: 'localhost:50051', flowControlWindow: -1 })
+    ).rejects.toBe(error);
+  });
+
+  it('rejects Android only methods when the native module lacks them', async () => {
+    const { getMetrics, connect } = Grpc;
+
+    Grpc.getMetrics = undefined;
+    Grpc.connect = undefined;
+
+    try {
+      await expect(client.getMetrics()).rejects.toThrow(
+        'Metrics are not supported on iOS'
+      );
+      await expect(client.connect()).rejects.toThrow(
+        'Connecting ahead of time is not supported on iOS'
+      );
+    } finally {
+      Grpc.getMetrics = getMetrics;
+      Grpc.connect = connect;
+    }
+  });
+});
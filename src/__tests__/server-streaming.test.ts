@@ -0,0 +1,110 @@
+import { ServerOutputStream } from '../server-streaming';
+
+function message(value: number) {
+  return new Uint8Array([value]);
+}
+
+function collect(stream: ServerOutputStream) {
+  const events: string[] = [];
+
+  stream.on('data', (data) => events.push(`data ${data[0]}`));
+  stream.on('complete', () => events.push('complete'));
+  stream.on('error', (reason) => events.push(`error ${reason}`));
+
+  return events;
+}
+
+describe('ServerOutputStream', () => {
+  it('delivers messages in order, then completes', () => {
+    const stream = new ServerOutputStream();
+    const events = collect(stream);
+
+    stream.notifyData(message(1));
+    stream.notifyData(message(2));
+    stream.notifyComplete();
+
+    expect(events).toEqual(['data 1', 'data 2', 'complete']);
+  });
+
+  it('buffers messages while paused and completes after them', () => {
+    const stream = new ServerOutputStream();
+    const events = collect(stream);
+
+    stream.pause();
+    stream.notifyData(message(1));
+    stream.notifyData(message(2));
+    stream.notifyComplete();
+
+    expect(events).toEqual([]);
+
+    stream.resume();
+
+    expect(events).toEqual(['data 1', 'data 2', 'complete']);
+  });
+
+  it('stops delivering when a listener pauses the stream', () => {
+    const stream = new ServerOutputStream();
+    const events = collect(stream);
+
+    const removeListener = stream.on('data', () => {
+      stream.pause();
+      removeListener();
+    });
+    stream.pause();
+    stream.notifyData(message(1));
+    stream.notifyData(message(2));
+    stream.noitfyError('failed');
+
+    stream.resume();
+    expect(events).toEqual(['data 1']);
+
+    stream.resume();
+    expect(events).toEqual(['data 1', 'data 2', 'error failed']);
+  });
+
+  it('returns credit in chunks of half the prefetch window', () => {
+    const requestMore = jest.fn();
+    const stream = new ServerOutputStream(4, requestMore);
+
+    collect(stream);
+
+    stream.notifyData(message(1));
+    expect(requestMore).not.toHaveBeenCalled();
+
+    stream.notifyData(message(2));
+    expect(requestMore).toHaveBeenLastCalledWith(2);
+
+    stream.notifyData(message(3));
+    stream.notifyData(message(4));
+    expect(requestMore).toHaveBeenCalledTimes(2);
+  });
+
+  it('only returns credit for messages delivered to the app', () => {
+    const requestMore = jest.fn();
+    const stream = new ServerOutputStream(2, requestMore);
+
+    collect(stream);
+
+    stream.pause();
+    stream.notifyData(message(1));
+    stream.notifyData(message(2));
+    expect(requestMore).not.toHaveBeenCalled();
+
+    stream.resume();
+    expect(requestMore).toHaveBeenCalledTimes(2);
+    expect(requestMore).toHaveBeenCalledWith(1);
+  });
+
+  it('never requests messages without a prefetch window', () => {
+    const requestMore = jest.fn();
+    const stream = new ServerOutputStream(0, requestMore);
+
+    collect(stream);
+
+    for (let i = 0; i < 10; i++) {
+      stream.notifyData(message(i));
+    }
+
+    expect(requestMore).not.toHaveBeenCalled();
+  });
+});
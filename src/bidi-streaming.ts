@@ -0,0 +1,78 @@
+/* eslint-disable eslint-comments/no-unlimited-disable */
+import { AbortController } from 'abort-controller';
+import type {
+  CompletedGrpcBidiStreamingCall,
+  GrpcMetadata,
+  GrpcServerInputStream,
+  GrpcServerOutputStream,
+} from './types';
+
+/* eslint-disable */
+
+export class GrpcBidiStreamingCall
+  implements PromiseLike<CompletedGrpcBidiStreamingCall> {
+  readonly method: string;
+  readonly requestHeaders: GrpcMetadata;
+  readonly headers: Promise<GrpcMetadata>;
+  readonly requests: GrpcServerInputStream;
+  readonly responses: GrpcServerOutputStream;
+  readonly trailers: Promise<GrpcMetadata>;
+
+  #abort: AbortController;
+
+  constructor(
+    method: string,
+    requestHeaders: GrpcMetadata,
+    headers: Promise<GrpcMetadata>,
+    requests: GrpcServerInputStream,
+    responses: GrpcServerOutputStream,
+    trailers: Promise<GrpcMetadata>,
+    abort: AbortController,
+  ) {
+    this.method = method;
+    this.requestHeaders = requestHeaders;
+    this.headers = headers;
+    this.requests = requests;
+    this.responses = responses;
+    this.trailers = trailers;
+    this.#abort = abort;
+  }
+  then<TResult1 = CompletedGrpcBidiStreamingCall, TResult2 = unknown>(
+    onfulfilled?:
+      | ((
+        value: CompletedGrpcBidiStreamingCall
+      ) => TResult1 | PromiseLike<TResult1>)
+      | null,
+    onrejected?: ((reason: any) => TResult2 | PromiseLike<TResult2>) | null
+  ): PromiseLike<TResult1 | TResult2> {
+    return this.completedPromise().then(
+      (value) =>
+        onfulfilled
+          ? Promise.resolve(onfulfilled(value))
+          : ((value as unknown) as TResult1),
+      (reason) =>
+        onrejected
+          ? Promise.resolve(onrejected(reason))
+          : Promise.reject(reason)
+    );
+  }
+
+  cancel() {
+    this.#abort.abort();
+  }
+
+  private async completedPromise(): Promise<CompletedGrpcBidiStreamingCall> {
+    const [headers, trailers] = await Promise.all([
+      this.headers,
+      this.trailers,
+    ]);
+
+    return {
+      method: this.method,
+      requestHeaders: this.requestHeaders,
+      headers,
+      trailers,
+      status: 0,
+    };
+  }
+}
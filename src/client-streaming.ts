@@ -2,15 +2,116 @@ import { fromByteArray } from 'base64-js';
 import { Grpc } from './client';
 import type { GrpcServerInputStream } from './types';
 
+type PendingMessage = {
+  data: string;
+  resolve: () => void;
+  reject: (reason: any) => void;
+};
+
 export class ServerInputStream implements GrpcServerInputStream {
+  #queue: PendingMessage[] = [];
+  #flushing?: Promise<void>;
+  #notifyReady?: () => void;
+  #closed = false;
+
   // eslint-disable-next-line prettier/prettier
   constructor(private callId: number, private clientId: number, private method: string) { }
+  /**
+   * Messages sent in the same tick are written to the call in a single batch. The returned promise
+   * resolves once the message has been written and the call is ready to accept more, so awaiting
+   * it applies backpressure.
+   */
   send(data: Uint8Array): Promise<void> {
-    return Grpc.clientStreamingCall(this.callId, this.clientId, this.method, {
-      data: fromByteArray(data),
-    });
+    return this.sendBatch([data]);
+  }
+  sendBatch(messages: Uint8Array[]): Promise<void> {
+    if (this.#closed) {
+      return Promise.reject(new Error('Call is closed'));
+    }
+
+    const sent = messages.map(
+      (message) =>
+        new Promise<void>((resolve, reject) => {
+          this.#queue.push({ data: fromByteArray(message), resolve, reject });
+        })
+    );
+
+    if (!this.#flushing) {
+      this.#flushing = this.#flush().finally(() => {
+        this.#flushing = undefined;
+      });
+    }
+
+    return Promise.all(sent).then(() => undefined);
   }
-  complete(): Promise<void> {
+  async complete(): Promise<void> {
+    while (this.#flushing) {
+      await this.#flushing;
+    }
+
     return Grpc.finishClientStreaming(this.callId);
   }
+  notifyReady(): void {
+    this.#notifyReady?.();
+  }
+  notifyClosed(): void {
+    this.#closed = true;
+    this.#notifyReady?.();
+
+    const error = new Error('Call is closed');
+
+    this.#queue.splice(0).forEach((message) => message.reject(error));
+  }
+
+  #flush = async () => {
+    // Let sends made in the same tick join the batch.
+    await Promise.resolve();
+
+    while (this.#queue.length > 0) {
+      const batch = this.#queue.splice(0);
+      const ready = new Promise<void>((resolve) => {
+        this.#notifyReady = resolve;
+      });
+
+      try {
+        const isReady = await this.#write(
+          batch.map((message) => message.data)
+        );
+
+        if (!isReady) {
+          await ready;
+        }
+
+        if (this.#closed) {
+          throw new Error('Call is closed');
+        }
+
+        batch.forEach((message) => message.resolve());
+      } catch (e) {
+        batch.forEach((message) => message.reject(e));
+      } finally {
+        this.#notifyReady = undefined;
+      }
+    }
+  };
+
+  #write = async (messages: string[]): Promise<boolean> => {
+    if (Grpc.clientStreamingBatch) {
+      return Grpc.clientStreamingBatch(
+        this.callId,
+        this.clientId,
+        this.method,
+        { messages },
+        {}
+      );
+    }
+
+    for (const data of messages) {
+      await Grpc.clientStreamingCall(this.callId, this.clientId, this.method, {
+        data,
+      });
+    }
+
+    return true;
+  };
 }
@@ -5,22 +5,36 @@ import {
   NativeEventEmitter,
   NativeModules,
 } from 'react-native';
+import { GrpcBidiStreamingCall } from './bidi-streaming';
+import { ServerInputStream } from './client-streaming';
+import { FileOutput, GrpcDownloadCall } from './download';
 import { GrpcError } from './errors';
 import {
   GrpcServerStreamingCall,
   ServerOutputStream,
 } from './server-streaming';
-import type { GrpcClientSettings, GrpcMetadata } from './types';
+import type {
+  GrpcCallOptions,
+  GrpcClientMetrics,
+  GrpcClientSettings,
+  GrpcConnectivityState,
+  GrpcDownloadProgress,
+  GrpcMetadata,
+  GrpcOutputFile,
+  RemoveListener,
+} from './types';
 import { GrpcUnaryCall } from './unary';
 
 type GrpcRequestObject = {
   data: string;
+  options?: GrpcCallOptions;
+  output?: GrpcOutputFile;
 };
 
 type GrpcOptions = GrpcClientSettings;
 
 type GrpcType = {
-  setGrpcSettings(id: number, settings: GrpcOptions): void;
+  setGrpcSettings(id: number, settings: GrpcOptions): Promise<void> | void;
   destroyClient(id: number): void;
   unaryCall(
     callId: number,
@@ -37,6 +51,7 @@ type GrpcType = {
     requestHeaders?: GrpcMetadata
   ): Promise<void>;
   cancelGrpcCall: (id: number) => Promise<boolean>;
+  requestMessages?(id: number, count: number): void;
   clientStreamingCall(
     callId: number,
     clientId: number,
@@ -45,9 +60,39 @@ type GrpcType = {
     requestHeaders?: GrpcMetadata
   ): Promise<void>;
   finishClientStreaming(id: number): Promise<void>;
+  clientStreamingBatch?(
+    callId: number,
+    clientId: number,
+    path: string,
+    obj: { messages: string[] },
+    requestHeaders?: GrpcMetadata
+  ): Promise<boolean>;
+  downloadCall?(
+    callId: number,
+    clientId: number,
+    path: string,
+    obj: GrpcRequestObject,
+    requestHeaders?: GrpcMetadata
+  ): Promise<void>;
+  bidiStreamingCall?(
+    callId: number,
+    clientId: number,
+    path: string,
+    obj: Omit<GrpcRequestObject, 'data'>,
+    requestHeaders?: GrpcMetadata
+  ): Promise<void>;
+  getMetrics?(id: number): Promise<GrpcClientMetrics>;
+  connect?(id: number, timeout: number): Promise<void>;
 };
 
-type GrpcEventType = 'response' | 'error' | 'headers' | 'trailers';
+type GrpcEventType =
+  | 'response'
+  | 'error'
+  | 'headers'
+  | 'trailers'
+  | 'ready'
+  | 'progress'
+  | 'close';
 
 /* prettier-ignore */
 type GrpcEventPayload =
@@ -68,13 +113,41 @@ type GrpcEventPayload =
   } | {
     type: 'status';
     payload: number;
+  } | {
+    type: 'ready';
+  } | {
+    type: 'progress';
+    bytes: number;
+    messages: number;
+  } | {
+    type: 'close';
+    code: number;
+    error?: string;
+    trailers?: GrpcMetadata;
+    payload?: string;
   };
 
 type GrpcEvent = {
   id: number;
+  clientId?: number;
   type: GrpcEventType;
 } & GrpcEventPayload;
 
+type GrpcConnectivityEvent = {
+  clientId: number;
+  state: GrpcConnectivityState;
+};
+
+type GrpcMetricsEvent = {
+  clientId: number;
+  metrics: GrpcClientMetrics;
+};
+
+type GrpcEventBatch = {
+  clientId?: number;
+  events: GrpcEvent[];
+};
+
 const { Grpc } = NativeModules as { Grpc: GrpcType };
 
 const Emitter = new NativeEventEmitter(NativeModules.Grpc);
@@ -91,6 +164,9 @@ type DeferredCalls = {
   response?: Deferred<Uint8Array>;
   trailers?: Deferred<GrpcMetadata>;
   data?: ServerOutputStream;
+  input?: ServerInputStream;
+  file?: FileOutput;
+  output?: Deferred<GrpcDownloadProgress>;
 };
 
 type DeferredCallMap = Map<number, DeferredCalls>;
@@ -126,69 +202,215 @@ function getId(): number {
   return idCtr++;
 }
 
-export class GrpcClient {
-  #deferredMap: DeferredCallMap = new Map<number, DeferredCalls>();
-
-  #handleGrpcEvent = (event: GrpcEvent) => {
-    const deferred = this.#deferredMap.get(event.id);
-
-    if (deferred) {
-      switch (event.type) {
-        case 'headers':
-          deferred.headers?.resolve(event.payload);
-          break;
-        case 'response':
-          const data = toByteArray(event.payload);
-
-          deferred.data?.notifyData(data);
-          deferred.response?.resolve(data);
-          break;
-        case 'trailers':
-          deferred.trailers?.resolve(event.payload);
-          deferred.data?.notifyComplete();
-
-          this.#deferredMap.delete(event.id);
-          break;
-        case 'error':
-          const error = new GrpcError(event.error, event.code, event.trailers);
-
-          deferred.response?.reject(error);
-          deferred.data?.noitfyError(error);
-
-          break;
-      }
+const deferredMap: DeferredCallMap = new Map<number, DeferredCalls>();
+
+function handleGrpcEvent(event: GrpcEvent) {
+  const deferred = deferredMap.get(event.id);
+
+  if (deferred) {
+    switch (event.type) {
+      case 'headers':
+        deferred.headers?.resolve(event.payload);
+        break;
+      case 'response':
+        const data = toByteArray(event.payload);
+
+        deferred.data?.notifyData(data);
+        deferred.response?.resolve(data);
+        break;
+      case 'trailers':
+        deferred.trailers?.resolve(event.payload);
+        deferred.data?.notifyComplete();
+        deferred.input?.notifyClosed();
+
+        deferredMap.delete(event.id);
+        break;
+      case 'error':
+        const error = new GrpcError(event.error, event.code, event.trailers);
+
+        deferred.response?.reject(error);
+        deferred.data?.noitfyError(error);
+
+        break;
+      case 'ready':
+        deferred.input?.notifyReady();
+        break;
+      case 'progress':
+        deferred.file?.notifyProgress(event.bytes, event.messages);
+        break;
+      case 'close':
+        // Android sends the status, trailers and, for unary calls, the response in one event.
+        if (event.payload !== undefined) {
+          const response = toByteArray(event.payload);
+
+          deferred.data?.notifyData(response);
+          deferred.response?.resolve(response);
+        }
+
+        if (event.error !== undefined) {
+          const closeError = new GrpcError(
+            event.error,
+            event.code,
+            event.trailers
+          );
+
+          deferred.response?.reject(closeError);
+          deferred.data?.noitfyError(closeError);
+          deferred.output?.reject(closeError);
+        } else if (deferred.file) {
+          deferred.output?.resolve(deferred.file.progress);
+        }
+
+        // Headers and trailers that weren't requested, or never sent, resolve empty.
+        deferred.headers?.resolve({});
+        deferred.trailers?.resolve(event.trailers ?? {});
+        deferred.data?.notifyComplete();
+        deferred.input?.notifyClosed();
+
+        deferredMap.delete(event.id);
+        break;
     }
-  };
+  }
+}
 
-  public clientId: number;
+// Fails a call whose native method rejected, so no event will ever settle it.
+function rejectCall(id: number, error: unknown) {
+  const deferred = deferredMap.get(id);
+
+  if (deferred) {
+    deferredMap.delete(id);
+    deferred.headers?.reject(error);
+    deferred.response?.reject(error);
+    deferred.data?.noitfyError(error);
+    deferred.output?.reject(error);
+    deferred.trailers?.reject(error);
+    deferred.input?.notifyClosed();
+  }
+}
+
+function handleGrpcEventBatch(batch: GrpcEventBatch) {
+  for (const event of batch.events) {
+    handleGrpcEvent(event);
+  }
+}
+
+let subscriptions: EmitterSubscription[] = [];
+let subscriberCount = 0;
 
-  private callSubscription: EmitterSubscription;
+function subscribe() {
+  if (subscriberCount++ === 0) {
+    subscriptions = [
+      Emitter.addListener('grpc-call', handleGrpcEvent),
+      Emitter.addListener('grpc-call-batch', handleGrpcEventBatch),
+    ];
+  }
+}
+
+function unsubscribe() {
+  if (--subscriberCount === 0) {
+    subscriptions.forEach((subscription) =>
+      Emitter.removeSubscription(subscription)
+    );
+
+    subscriptions = [];
+  }
+}
+
+export class GrpcClient {
+  #destroyed = false;
+
+  public clientId: number;
 
   constructor(settings: GrpcClientSettings) {
     this.clientId = getId();
     this.updateSettings(settings);
 
-    this.callSubscription = Emitter.addListener(
-      'grpc-call',
-      this.#handleGrpcEvent
-    );
+    subscribe();
   }
   destroy() {
-    Emitter.removeSubscription(this.callSubscription);
+    if (!this.#destroyed) {
+      this.#destroyed = true;
+
+      unsubscribe();
+    }
 
     Grpc.destroyClient(this.clientId);
   }
-  updateSettings(settings: GrpcClientSettings) {
-    Grpc.setGrpcSettings(this.clientId, settings);
+  /**
+   * On Android, changes to `requestTimeout`, `headers`, `compression`, `compressionName` and
+   * `singleFlight` apply to new calls without a new connection. Other changes create a new channel
+   * for new calls, while calls in flight finish on the previous one. Rejects on Android if the
+   * settings are invalid, in which case the client keeps its current settings.
+   */
+  updateSettings(settings: GrpcClientSettings): Promise<void> {
+    return Promise.resolve(Grpc.setGrpcSettings(this.clientId, settings));
+  }
+  /**
+   * Android only, rejects on iOS.
+   */
+  getMetrics(): Promise<GrpcClientMetrics> {
+    const { getMetrics } = Grpc;
+    if (!getMetrics) {
+      return Promise.reject(new Error('Metrics are not supported on iOS'));
+    }
+    return getMetrics(this.clientId);
+  }
+  /**
+   * Starts connecting if the channel is idle and resolves once it is ready. Rejects if `timeout`
+   * milliseconds pass first, or if the client is destroyed. Android only, rejects on iOS.
+   */
+  connect(timeout: number = 0): Promise<void> {
+    const { connect } = Grpc;
+    if (!connect) {
+      return Promise.reject(
+        new Error('Connecting ahead of time is not supported on iOS')
+      );
+    }
+    return connect(this.clientId, timeout);
+  }
+  onConnectivityStateChange(
+    callback: (state: GrpcConnectivityState) => void
+  ): RemoveListener {
+    const subscription = Emitter.addListener(
+      'grpc-connectivity',
+      (event: GrpcConnectivityEvent) => {
+        if (event.clientId === this.clientId) {
+          callback(event.state);
+        }
+      }
+    );
+
+    return () => {
+      Emitter.removeSubscription(subscription);
+    };
+  }
+  /**
+   * Receives the client's metrics every `metrics.interval` milliseconds.
+   */
+  onMetrics(callback: (metrics: GrpcClientMetrics) => void): RemoveListener {
+    const subscription = Emitter.addListener(
+      'grpc-metrics',
+      (event: GrpcMetricsEvent) => {
+        if (event.clientId === this.clientId) {
+          callback(event.metrics);
+        }
+      }
+    );
+
+    return () => {
+      Emitter.removeSubscription(subscription);
+    };
   }
   unaryCall(
     method: string,
     data: Uint8Array,
-    requestHeaders?: GrpcMetadata
+    requestHeaders?: GrpcMetadata,
+    options?: GrpcCallOptions
   ): GrpcUnaryCall {
     const requestData = fromByteArray(data);
     const obj: GrpcRequestObject = {
       data: requestData,
+      options,
     };
 
     const id = getId();
@@ -202,13 +424,15 @@ export class GrpcClient {
     const headers = createDeferred<GrpcMetadata>(abort.signal);
     const trailers = createDeferred<GrpcMetadata>(abort.signal);
 
-    this.#deferredMap.set(id, {
+    deferredMap.set(id, {
       response,
       headers,
       trailers,
     });
 
-    Grpc.unaryCall(id, this.clientId, method, obj, requestHeaders || {});
+    Grpc.unaryCall(id, this.clientId, method, obj, requestHeaders || {}).catch(
+      (error) => rejectCall(id, error)
+    );
 
     const call = new GrpcUnaryCall(
       method,
@@ -225,11 +449,13 @@ export class GrpcClient {
   serverStreamCall(
     method: string,
     data: Uint8Array,
-    requestHeaders?: GrpcMetadata
+    requestHeaders?: GrpcMetadata,
+    options?: GrpcCallOptions
   ): GrpcServerStreamingCall {
     const requestData = fromByteArray(data);
     const obj: GrpcRequestObject = {
       data: requestData,
+      options,
     };
 
     const id = getId();
@@ -242,9 +468,14 @@ export class GrpcClient {
     const headers = createDeferred<GrpcMetadata>(abort.signal);
     const trailers = createDeferred<GrpcMetadata>(abort.signal);
 
-    const stream = new ServerOutputStream();
+    const { requestMessages } = Grpc;
+    const prefetch = requestMessages ? options?.prefetch ?? 0 : 0;
 
-    this.#deferredMap.set(id, {
+    const stream = new ServerOutputStream(prefetch, (count) =>
+      requestMessages?.(id, count)
+    );
+
+    deferredMap.set(id, {
       headers,
       trailers,
       data: stream,
@@ -256,7 +487,7 @@ export class GrpcClient {
       method,
       obj,
       requestHeaders || {}
-    );
+    ).catch((error) => rejectCall(id, error));
 
     const call = new GrpcServerStreamingCall(
       method,
@@ -270,6 +501,120 @@ export class GrpcClient {
 
     return call;
   }
+  /**
+   * Android only. Calls a unary or server streaming method and writes its response messages to a
+   * file instead of delivering them to JS, which only receives progress events.
+   */
+  downloadCall(
+    method: string,
+    data: Uint8Array,
+    output: GrpcOutputFile,
+    requestHeaders?: GrpcMetadata,
+    options?: GrpcCallOptions
+  ): GrpcDownloadCall {
+    const { downloadCall } = Grpc;
+
+    if (!downloadCall) {
+      throw new Error(
+        'Downloading to a file is not supported on this platform'
+      );
+    }
+
+    const requestData = fromByteArray(data);
+    const obj: GrpcRequestObject = {
+      data: requestData,
+      options,
+      output,
+    };
+
+    const id = getId();
+    const abort = new AbortController();
+
+    abort.signal.addEventListener('abort', () => {
+      Grpc.cancelGrpcCall(id);
+    });
+
+    const headers = createDeferred<GrpcMetadata>(abort.signal);
+    const trailers = createDeferred<GrpcMetadata>(abort.signal);
+    const outputDeferred = createDeferred<GrpcDownloadProgress>(abort.signal);
+    const file = new FileOutput(output.path, output.offset);
+
+    deferredMap.set(id, {
+      headers,
+      trailers,
+      file,
+      output: outputDeferred,
+    });
+
+    downloadCall(id, this.clientId, method, obj, requestHeaders || {}).catch(
+      (error) => rejectCall(id, error)
+    );
+
+    return new GrpcDownloadCall(
+      method,
+      data,
+      requestHeaders || {},
+      headers.promise,
+      file,
+      outputDeferred.promise,
+      trailers.promise,
+      abort
+    );
+  }
+  bidiStreamCall(
+    method: string,
+    requestHeaders?: GrpcMetadata,
+    options?: GrpcCallOptions
+  ): GrpcBidiStreamingCall {
+    const { bidiStreamingCall, requestMessages } = Grpc;
+
+    if (!bidiStreamingCall) {
+      throw new Error(
+        'Bidirectional streaming is not supported on this platform'
+      );
+    }
+
+    const id = getId();
+    const abort = new AbortController();
+
+    abort.signal.addEventListener('abort', () => {
+      Grpc.cancelGrpcCall(id);
+    });
+
+    const headers = createDeferred<GrpcMetadata>(abort.signal);
+    const trailers = createDeferred<GrpcMetadata>(abort.signal);
+
+    const responses = new ServerOutputStream(
+      requestMessages ? options?.prefetch ?? 0 : 0,
+      (count) => requestMessages?.(id, count)
+    );
+    const requests = new ServerInputStream(id, this.clientId, method);
+
+    deferredMap.set(id, {
+      headers,
+      trailers,
+      data: responses,
+      input: requests,
+    });
+
+    bidiStreamingCall(
+      id,
+      this.clientId,
+      method,
+      { options },
+      requestHeaders || {}
+    ).catch((error) => rejectCall(id, error));
+
+    return new GrpcBidiStreamingCall(
+      method,
+      requestHeaders || {},
+      headers.promise,
+      requests,
+      responses,
+      trailers.promise,
+      abort
+    );
+  }
 }
 
 export { Grpc };
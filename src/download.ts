@@ -0,0 +1,123 @@
+import { AbortController } from 'abort-controller';
+import { EventEmitter } from 'eventemitter3';
+import type {
+  CompletedGrpcDownloadCall,
+  GrpcDownloadProgress,
+  GrpcMetadata,
+  RemoveListener,
+} from './types';
+
+export class GrpcDownloadCall
+  implements PromiseLike<CompletedGrpcDownloadCall>
+{
+  readonly method: string;
+  readonly requestHeaders: GrpcMetadata;
+  readonly request: Uint8Array;
+  readonly headers: Promise<GrpcMetadata>;
+  /** Resolves with the file once the call succeeds, rejects with the call's error otherwise. */
+  readonly output: Promise<GrpcDownloadProgress>;
+  readonly trailers: Promise<GrpcMetadata>;
+
+  #file: FileOutput;
+  #abort: AbortController;
+
+  constructor(
+    method: string,
+    data: Uint8Array,
+    requestHeaders: GrpcMetadata,
+    headers: Promise<GrpcMetadata>,
+    file: FileOutput,
+    output: Promise<GrpcDownloadProgress>,
+    trailers: Promise<GrpcMetadata>,
+    abort: AbortController
+  ) {
+    this.method = method;
+    this.request = data;
+    this.requestHeaders = requestHeaders;
+    this.headers = headers;
+    this.output = output;
+    this.trailers = trailers;
+    this.#file = file;
+    this.#abort = abort;
+  }
+
+  /**
+   * The latest progress. After a failure, `bytes` is the `offset` to resume the download from.
+   */
+  get progress(): GrpcDownloadProgress {
+    return this.#file.progress;
+  }
+
+  onProgress(
+    callback: (progress: GrpcDownloadProgress) => void
+  ): RemoveListener {
+    return this.#file.on(callback);
+  }
+
+  then<TResult1 = CompletedGrpcDownloadCall, TResult2 = unknown>(
+    onfulfilled?:
+      | ((value: CompletedGrpcDownloadCall) => TResult1 | PromiseLike<TResult1>)
+      | null,
+    onrejected?: ((reason: any) => TResult2 | PromiseLike<TResult2>) | null
+  ): PromiseLike<TResult1 | TResult2> {
+    return this.completedPromise().then(
+      (value) =>
+        onfulfilled
+          ? Promise.resolve(onfulfilled(value))
+          : (value as unknown as TResult1),
+      (reason) =>
+        onrejected
+          ? Promise.resolve(onrejected(reason))
+          : Promise.reject(reason)
+    );
+  }
+
+  cancel() {
+    this.#abort.abort();
+  }
+
+  private async completedPromise(): Promise<CompletedGrpcDownloadCall> {
+    const [headers, output, trailers] = await Promise.all([
+      this.headers,
+      this.output,
+      this.trailers,
+    ]);
+
+    return {
+      method: this.method,
+      requestHeaders: this.requestHeaders,
+      request: this.request,
+      headers,
+      trailers,
+      output,
+      status: 0,
+    };
+  }
+}
+
+export class FileOutput {
+  #emitter = new EventEmitter<'progress'>();
+  #progress: GrpcDownloadProgress;
+
+  constructor(path: string, offset: number = 0) {
+    this.#progress = { path, bytes: offset, messages: 0 };
+  }
+
+  get progress(): GrpcDownloadProgress {
+    return this.#progress;
+  }
+
+  on(callback: (progress: GrpcDownloadProgress) => void): RemoveListener {
+    this.#emitter.addListener('progress', callback);
+
+    return () => {
+      this.#emitter.removeListener('progress', callback);
+    };
+  }
+
+  notifyProgress(bytes: number, messages: number): void {
+    this.#progress = { path: this.#progress.path, bytes, messages };
+
+    this.#emitter.emit('progress', this.#progress);
+  }
+}
@@ -1,5 +1,8 @@
 export * from './types';
 export * from './unary';
 export * from './server-streaming';
+export * from './bidi-streaming';
+export * from './client-streaming';
+export * from './download';
 export * from './errors';
 export * from './client';
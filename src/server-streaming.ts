@@ -82,6 +82,17 @@ export class GrpcServerStreamingCall
 
 export class ServerOutputStream implements GrpcServerOutputStream {
   #emitter = new EventEmitter<ServerOutputEvent>();
+  #buffer: Uint8Array[] = [];
+  #paused = false;
+  #finish: (() => void)[] = [];
+  #consumed = 0;
+  #prefetch: number;
+  #requestMore?: (count: number) => void;
+
+  constructor(prefetch: number = 0, requestMore?: (count: number) => void) {
+    this.#prefetch = prefetch;
+    this.#requestMore = requestMore;
+  }
 
   on<T extends ServerOutputEvent>(event: T, callback: ServerOutputEventCallback<T>) {
     this.#emitter.addListener(event, callback);
@@ -91,15 +102,58 @@ export class ServerOutputStream implements GrpcServerOutputStream {
     }
   }
 
+  pause(): void {
+    this.#paused = true;
+  }
+
+  resume(): void {
+    this.#paused = false;
+
+    while (!this.#paused && this.#buffer.length > 0) {
+      this.#deliver(this.#buffer.shift()!);
+    }
+
+    while (!this.#paused && this.#buffer.length === 0 && this.#finish.length > 0) {
+      this.#finish.shift()!();
+    }
+  }
+
   notifyData(data: Uint8Array): void {
-    this.#emitter.emit('data', data);
+    if (this.#paused) {
+      this.#buffer.push(data);
+    } else {
+      this.#deliver(data);
+    }
   }
 
   notifyComplete(): void {
-    this.#emitter.emit('complete')
+    this.#settle(() => this.#emitter.emit('complete'));
   }
 
   noitfyError(reason: any): void {
-    this.#emitter.emit('error', reason);
+    this.#settle(() => this.#emitter.emit('error', reason));
+  }
+
+  #settle = (finish: () => void) => {
+    if (this.#buffer.length > 0) {
+      this.#finish.push(finish);
+    } else {
+      finish();
+    }
+  }
+
+  #deliver = (data: Uint8Array) => {
+    this.#emitter.emit('data', data);
+
+    if (this.#prefetch > 0 && this.#requestMore) {
+      this.#consumed++;
+
+      // Return credit in chunks of half the window to keep bridge calls low.
+      if (this.#consumed >= Math.max(1, Math.floor(this.#prefetch / 2))) {
+        this.#requestMore(this.#consumed);
+
+        this.#consumed = 0;
+      }
+    }
   }
 }
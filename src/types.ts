@@ -2,21 +2,372 @@ export type GrpcMetadata = Record<string, string>;
 
 export type RemoveListener = () => void;
 
+export type GrpcConnectivityState =
+  | 'IDLE'
+  | 'CONNECTING'
+  | 'READY'
+  | 'TRANSIENT_FAILURE'
+  | 'SHUTDOWN';
+
 export type GrpcClientSettings = {
   host: string;
   insecure?: boolean;
   compression?: boolean;
   compressionName?: string;
+  /** Android. Messages smaller than this many bytes are sent uncompressed. */
   compressionLimit?: number;
+  /** Android. Level from 0 to 9 for the gzip and deflate compressors. */
+  compressionLevel?: number;
   responseLimit?: number;
   keepalive?: boolean;
   keepaliveInterval?: number;
   keepaliveTimeout?: number;
   requestTimeout?: number;
+  /**
+   * Android. Headers sent with every call, parsed once when the settings are applied. Call headers
+   * with the same name replace them. Values of `-bin` headers are Base64 encoded.
+   */
+  headers?: GrpcMetadata;
+  /** Android. Maximum size of received metadata in bytes. */
+  maxMetadataSize?: number;
+  /** Android. HTTP/2 flow control window in bytes. */
+  flowControlWindow?: number;
+  /** Android. Milliseconds without calls before the connection is released. */
+  idleTimeout?: number;
+  /** Android. gRPC service config, e.g. to define retry or hedging policies. */
+  serviceConfig?: Record<string, unknown>;
+  /** Android. Enables or disables retries configured in `serviceConfig`. */
+  retry?: boolean;
+  maxRetryAttempts?: number;
+  maxHedgedAttempts?: number;
+  retryBufferSize?: number;
+  perRpcBufferLimit?: number;
+  userAgent?: string;
+  /** Android. Start connecting as soon as the client is created instead of on the first call. */
+  eagerConnect?: boolean;
+  eventBatching?: GrpcEventBatchingSettings;
+  executor?: GrpcExecutorSettings;
+  /**
+   * Android. Backend addresses (`host:port`) to spread calls over instead of resolving `host`,
+   * which is still used as the authority.
+   */
+  addresses?: string[];
+  /**
+   * Android. `pick_first` (default) or `round_robin`. Other policies are only available when their
+   * provider is on the classpath.
+   */
+  loadBalancingPolicy?: 'pick_first' | 'round_robin' | (string & {});
+  /** Android. Share one call between identical concurrent unary calls by default. */
+  singleFlight?: boolean;
+  /**
+   * Android. Record per method call metrics, reported in `getMetrics` and, with an `interval`,
+   * periodically to `onMetrics` listeners.
+   */
+  metrics?: boolean | GrpcMetricsSettings;
+  /** Android. Response cache for unary calls made with the `cache` call option. */
+  cache?: GrpcCacheSettings;
+  /**
+   * Android. Maximum number of unary, server streaming and download calls running at once. Further
+   * calls wait in a queue by `priority`, then arrival, and fail if their deadline passes first.
+   */
+  maxConcurrentCalls?: number;
+  /**
+   * Android. Maximum number of waiting calls. A new call then displaces the newest waiting call of
+   * a lower priority, or fails with `RESOURCE_EXHAUSTED`. Unlimited by default.
+   */
+  maxQueuedCalls?: number;
+  /**
+   * Android. Milliseconds calls started before a settings update that replaces the channel may run
+   * on the previous channel before they are cancelled. Defaults to 30000.
+   */
+  drainTimeout?: number;
+  /** Android. Open several HTTP/2 connections and spread calls over them. */
+  channelPool?: GrpcChannelPoolSettings;
+  /** Android. Persistent queue for unary calls made with the `outbox` call option. */
+  outbox?: GrpcOutboxSettings;
+};
+
+export type GrpcOutboxSettings = {
+  /**
+   * Tells apart the outboxes of clients with the same `host`. The outbox of a host and name is kept
+   * across launches.
+   */
+  name?: string;
+  /** Calls replayed at once. Defaults to 1, which delivers calls strictly in order. */
+  maxConcurrency?: number;
+  /** Maximum number of calls waiting in the outbox. Defaults to 1000. */
+  maxEntries?: number;
+  /**
+   * Milliseconds before the first retry of a call that failed with a transient status, doubled for
+   * each further retry. Defaults to 1000.
+   */
+  initialBackoff?: number;
+  /** Maximum milliseconds between retries. Defaults to 60000. */
+  maxBackoff?: number;
+  /** Header carrying the idempotency key of each call. Defaults to `idempotency-key`. */
+  idempotencyHeader?: string;
+};
+
+export type GrpcChannelPoolSettings = {
+  /** Number of channels, each with its own connection. Defaults to 1. */
+  size?: number;
+  /**
+   * Channels reserved for streaming calls, so that long streams don't share a connection with
+   * unary calls. Must leave at least one channel for unary calls. Defaults to 0.
+   */
+  streamingChannels?: number;
+};
+
+export type GrpcMetricsSettings = {
+  /** Milliseconds between metrics reports. Disabled if 0 or absent. */
+  interval?: number;
+};
+
+export type GrpcCacheSettings = {
+  /** Milliseconds a response is served without contacting the server. Defaults to 60000. */
+  ttl?: number;
+  /** Milliseconds after `ttl` during which a stale response is served while it is refreshed. */
+  staleWhileRevalidate?: number;
+  /** Maximum size of the cached responses in bytes. Defaults to 1 MiB. */
+  maxBytes?: number;
+  /** Keep responses in the app cache directory across launches. */
+  persist?: boolean;
+  /** Request headers that are part of the cache key, e.g. `authorization`. */
+  headers?: string[];
+};
+
+export type GrpcExecutorSettings = {
+  /**
+   * `shared` (default) uses a pool shared by all clients, `dedicated` creates a pool for this
+   * client and `direct` runs callbacks on the transport thread, for cheap listeners only.
+   */
+  type?: 'shared' | 'dedicated' | 'direct';
+  poolSize?: number;
+  queueSize?: number;
+};
+
+export type GrpcEventBatchingSettings = {
+  maxSize?: number;
+  maxDelay?: number;
+};
+
+export type GrpcEventMetrics = {
+  batching: boolean;
+  batches: number;
+  batchedEvents: number;
+  largestBatch: number;
+  averageBatchSize: number;
+  averageFlushLatency: number;
+  maxFlushLatency: number;
+};
+
+export type GrpcExecutorMetrics = {
+  type: 'shared' | 'dedicated' | 'direct';
+  poolSize?: number;
+  activeThreads?: number;
+  queueDepth?: number;
+  queueCapacity?: number;
+  completedTasks?: number;
+  saturatedTasks: number;
+};
+
+export type GrpcCacheMetrics = {
+  hits: number;
+  staleHits: number;
+  misses: number;
+  stores: number;
+  evictions: number;
+  revalidations: number;
+  entries: number;
+  bytes: number;
+  maxBytes: number;
+};
+
+export type GrpcSingleFlightMetrics = {
+  inFlight: number;
+  calls: number;
+  joined: number;
+};
+
+export type GrpcEndpointMetrics = {
+  calls: number;
+  failures: number;
+  averageLatency: number;
+  maxLatency: number;
+};
+
+export type GrpcMethodMetrics = {
+  calls: number;
+  inFlight: number;
+  /** Number of calls per status code name, e.g. `OK` or `UNAVAILABLE`. */
+  statusCodes: Record<string, number>;
+  averageLatency: number;
+  maxLatency: number;
+  p50Latency: number;
+  p90Latency: number;
+  p99Latency: number;
+  /**
+   * Upper bounds in milliseconds of the `latencyCounts` buckets. `latencyCounts` has one more
+   * bucket for slower calls.
+   */
+  latencyBuckets: number[];
+  latencyCounts: number[];
+  /** Milliseconds between the transport closing a call and its callback running on the executor. */
+  averageCallbackDelay: number;
+  maxCallbackDelay: number;
+  sentMessages: number;
+  receivedMessages: number;
+  sentBytes: number;
+  sentWireBytes: number;
+  receivedBytes: number;
+  receivedWireBytes: number;
+};
+
+export type GrpcCodecMetrics = {
+  compressedMessages: number;
+  /** Uncompressed bytes per compressed byte. */
+  compressRatio: number;
+  compressTime: number;
+  decompressedMessages: number;
+  decompressRatio: number;
+  decompressTime: number;
+};
+
+export type GrpcCompressionMetrics = {
+  threshold: number;
+  /** Messages sent uncompressed because they were smaller than `compressionLimit`. */
+  skippedMessages: number;
+  codecs: Record<string, GrpcCodecMetrics>;
+};
+
+export type GrpcPriority = 'high' | 'normal' | 'low';
+
+export type GrpcPriorityMetrics = {
+  admitted: number;
+  averageQueueWait: number;
+  maxQueueWait: number;
+};
+
+export type GrpcAdmissionMetrics = {
+  maxConcurrentCalls: number;
+  inFlight: number;
+  queued: number;
+  /** Calls rejected or displaced because the queue was full. */
+  rejected: number;
+  /** Calls whose deadline passed while they waited. */
+  expired: number;
+  /** Calls cancelled while they waited. */
+  cancelled: number;
+  priorities: Record<GrpcPriority, GrpcPriorityMetrics>;
+};
+
+export type GrpcOutboxMetrics = {
+  /** Calls waiting in the outbox, including those being sent. */
+  queued: number;
+  inFlight: number;
+  enqueued: number;
+  /** Calls found in the outbox when the client was created. */
+  recovered: number;
+  delivered: number;
+  /** Calls that failed with a status that isn't retried. */
+  failed: number;
+  cancelled: number;
+  retries: number;
+  /** Calls completed per second while calls were being replayed. */
+  replayRate: number;
+  /** Size of the outbox file in bytes. */
+  logSize: number;
+};
+
+export type GrpcChannelMetrics = {
+  lane: 'shared' | 'streaming' | 'unary';
+  state: GrpcConnectivityState;
+  activeCalls: number;
+};
+
+export type GrpcClientMetrics = {
+  events: GrpcEventMetrics;
+  executor: GrpcExecutorMetrics;
+  singleFlight: GrpcSingleFlightMetrics;
+  compression: GrpcCompressionMetrics;
+  cache?: GrpcCacheMetrics;
+  /** Keyed by remote address, when `addresses` or `loadBalancingPolicy` is set. */
+  endpoints?: Record<string, GrpcEndpointMetrics>;
+  /** Keyed by full method name, when the `metrics` setting is enabled. */
+  methods?: Record<string, GrpcMethodMetrics>;
+  /** When `maxConcurrentCalls` is set. */
+  admission?: GrpcAdmissionMetrics;
+  /** When the `outbox` setting is set. */
+  outbox?: GrpcOutboxMetrics;
+  /** One entry per channel, when `channelPool` has more than one channel. */
+  channels?: GrpcChannelMetrics[];
+};
+
+export type GrpcCallOptions = {
+  /**
+   * Server and bidi streaming only (Android). Number of messages requested from the server ahead of
+   * consumption. More messages are only requested as `data` listeners consume them. 0, the
+   * default, requests the next message as soon as one is received.
+   */
+  prefetch?: number;
+  /**
+   * Unary only (Android). Serve the response from the client's response cache when possible. Only
+   * use it for idempotent methods.
+   */
+  cache?: boolean;
+  /**
+   * Unary only (Android). Join an identical call (same method, request and headers) that is still
+   * waiting for its response instead of starting a new one. Overrides the `singleFlight` setting.
+   */
+  singleFlight?: boolean;
+  /**
+   * Android. Set to false if the call's headers aren't needed, so they are neither converted nor
+   * sent over the bridge. The `headers` promise then resolves with an empty object.
+   */
+  receiveHeaders?: boolean;
+  /** Android. Like `receiveHeaders`, for trailers. Error trailers are omitted too. */
+  receiveTrailers?: boolean;
+  /**
+   * Android. Order in which calls waiting for `maxConcurrentCalls` are started. Defaults to
+   * `normal`; cache revalidations run with `low`.
+   */
+  priority?: GrpcPriority;
+  /**
+   * Unary only (Android). Store the call in the client's outbox and send it once the channel is
+   * ready, retrying transient failures, even after the app restarts. The call resolves when it is
+   * delivered or fails with a status that isn't retried. Needs the `outbox` setting.
+   */
+  outbox?: boolean;
+};
+
+export type GrpcOutputFile = {
+  /** Absolute path of the file. Missing parent directories are created. */
+  path: string;
+  /**
+   * `raw` (default) writes the messages back to back. `delimited` prefixes each message with its
+   * varint length, as read by protobuf's `parseDelimitedFrom`.
+   */
+  format?: 'raw' | 'delimited';
+  /**
+   * Resumes a failed download: the file is cut to this length and appended to. The request should
+   * ask the server to continue from the same point.
+   */
+  offset?: number;
+  /** Minimum milliseconds between progress events. Defaults to 100. */
+  progressInterval?: number;
+};
+
+export type GrpcDownloadProgress = {
+  path: string;
+  /** Length of the file. */
+  bytes: number;
+  /** Messages written by this call. */
+  messages: number;
 };
 
 export interface GrpcServerInputStream {
   send(data: Uint8Array): Promise<void>;
+  sendBatch(messages: Uint8Array[]): Promise<void>;
   complete(): Promise<void>;
 }
 
@@ -38,6 +389,8 @@ export interface GrpcServerOutputStream {
     event: T,
     callback: ServerOutputEventCallback<T>
   ): RemoveListener;
+  pause(): void;
+  resume(): void;
 }
 
 export type GrpcUnaryResponse = {
@@ -64,3 +417,21 @@ export type CompletedGrpcStreamingCall = {
   readonly status?: number;
   readonly trailers?: GrpcMetadata;
 };
+
+export type CompletedGrpcDownloadCall = {
+  readonly method: string;
+  readonly requestHeaders: GrpcMetadata;
+  readonly request: Uint8Array;
+  readonly headers?: GrpcMetadata;
+  readonly output: GrpcDownloadProgress;
+  readonly status?: number;
+  readonly trailers?: GrpcMetadata;
+};
+
+export type CompletedGrpcBidiStreamingCall = {
+  readonly method: string;
+  readonly requestHeaders: GrpcMetadata;
+  readonly headers?: GrpcMetadata;
+  readonly status?: number;
+  readonly trailers?: GrpcMetadata;
+};